@@ -0,0 +1,138 @@
+package com.simplaex.sugar.vertx;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports how the results of a JMH run compare to a baseline result file.
+ * <p>
+ * Usage: {@code BenchmarkComparison <baseline.json> <result.json> [tolerance]}, the tolerance being a fraction
+ * (0.2 by default). A benchmark is reported as slower (or faster) only if its score changed by more than the
+ * tolerance and the 99.9% confidence intervals of both runs do not overlap, everything else is within the noise
+ * of the measurement. Allocations per operation are reported if they grew by more than the tolerance. Only
+ * benchmarks present in both files are compared, so a run of a subset of the benchmarks can be checked against
+ * the full baseline.
+ * <p>
+ * This is a report, not a gate: scores are only comparable between runs on the same machine and JDK, which
+ * is pointed out if the JDKs of the two files differ, and the exit status is 0 regardless of the outcome.
+ */
+public final class BenchmarkComparison {
+
+  private static final String ALLOCATION = "\u00b7gc.alloc.rate.norm";
+
+  /**
+   * Allocation differences below this many bytes per operation are ignored.
+   */
+  private static final double ALLOCATION_SLACK_BYTES = 16;
+
+  private BenchmarkComparison() {
+  }
+
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: BenchmarkComparison <baseline.json> <result.json> [tolerance]");
+      System.exit(2);
+    }
+    final double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.2;
+    final Map<String, JsonObject> baseline = read(args[0]);
+    final Map<String, JsonObject> result = read(args[1]);
+    int compared = 0;
+    int slower = 0;
+    int faster = 0;
+    int allocating = 0;
+    String jdkBefore = null;
+    String jdkAfter = null;
+    for (final Map.Entry<String, JsonObject> entry : result.entrySet()) {
+      final JsonObject before = baseline.get(entry.getKey());
+      if (before == null) {
+        continue;
+      }
+      compared += 1;
+      final JsonObject after = entry.getValue();
+      jdkBefore = before.getString("vmVersion", before.getString("jdkVersion"));
+      jdkAfter = after.getString("vmVersion", after.getString("jdkVersion"));
+      final double scoreBefore = score(before);
+      final double scoreAfter = score(after);
+      final double change = scoreBefore == 0 ? 0 : (scoreAfter - scoreBefore) / scoreBefore;
+      final boolean higherIsBetter = "thrpt".equals(after.getString("mode"));
+      final boolean significant = Math.abs(change) > tolerance
+        && (scoreAfter + error(after) < scoreBefore - error(before) || scoreAfter - error(after) > scoreBefore + error(before));
+      final String verdict;
+      if (!significant) {
+        verdict = "~";
+      } else if (change < 0 == higherIsBetter) {
+        verdict = "slower";
+        slower += 1;
+      } else {
+        verdict = "faster";
+        faster += 1;
+      }
+      final double allocationBefore = allocation(before);
+      final double allocationAfter = allocation(after);
+      final boolean allocates = allocationAfter > allocationBefore * (1 + tolerance) + ALLOCATION_SLACK_BYTES;
+      if (allocates) {
+        allocating += 1;
+      }
+      System.out.printf(
+        "%-6s %-70s %14.3f +-%5.1f%% -> %14.3f +-%5.1f%% %s (%+6.1f%%)   %10.1f -> %10.1f B/op%s%n",
+        verdict,
+        entry.getKey(),
+        scoreBefore,
+        relativeError(before),
+        scoreAfter,
+        relativeError(after),
+        after.getJsonObject("primaryMetric").getString("scoreUnit"),
+        change * 100,
+        allocationBefore,
+        allocationAfter,
+        allocates ? " more allocations" : ""
+      );
+    }
+    System.out.printf(
+      "%d benchmarks compared: %d slower, %d faster, %d allocating more (tolerance %.0f%%)%n",
+      compared, slower, faster, allocating, tolerance * 100
+    );
+    if (jdkBefore != null && !jdkBefore.equals(jdkAfter)) {
+      System.out.printf("The baseline was recorded on JDK %s, this run on JDK %s: the scores are not comparable%n", jdkBefore, jdkAfter);
+    }
+  }
+
+  private static Map<String, JsonObject> read(final String file) throws IOException {
+    final JsonArray results = new JsonArray(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8));
+    final Map<String, JsonObject> byKey = new LinkedHashMap<>();
+    for (int i = 0; i < results.size(); i += 1) {
+      final JsonObject result = results.getJsonObject(i);
+      final StringBuilder key = new StringBuilder(result.getString("benchmark"));
+      final JsonObject params = result.getJsonObject("params", new JsonObject());
+      params.fieldNames().stream().sorted().forEach(name -> key.append(' ').append(name).append('=').append(params.getValue(name)));
+      byKey.put(key.toString(), result);
+    }
+    return byKey;
+  }
+
+  private static double score(final JsonObject result) {
+    return result.getJsonObject("primaryMetric").getDouble("score");
+  }
+
+  private static double error(final JsonObject result) {
+    final Object error = result.getJsonObject("primaryMetric").getValue("scoreError");
+    return error instanceof Number && !Double.isNaN(((Number) error).doubleValue()) ? ((Number) error).doubleValue() : 0;
+  }
+
+  private static double relativeError(final JsonObject result) {
+    final double score = score(result);
+    return score == 0 ? 0 : error(result) / score * 100;
+  }
+
+  private static double allocation(final JsonObject result) {
+    final JsonObject secondary = result.getJsonObject("secondaryMetrics", new JsonObject()).getJsonObject(ALLOCATION);
+    return secondary != null ? secondary.getDouble("score") : 0;
+  }
+}
@@ -0,0 +1,96 @@
+package com.simplaex.sugar.vertx.codec;
+
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Measures encodeToWire/decodeFromWire throughput of all event bus codecs for a number of payload shapes.
+ * <p>
+ * Run with {@code mvn -P benchmark verify}; this includes the GC profiler for allocation rates.
+ * The results are reported against src/jmh/jmh-baseline.json, see the benchmark profile in the pom for how to
+ * compare against a baseline recorded on your own machine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+  public enum Shape {
+    SMALL(Payloads.Small.class, () -> new Payloads.Small(42)),
+    NESTED(Payloads.Nested.class, () -> new Payloads.Nested(8)),
+    COLLECTION(Payloads.Collection.class, () -> new Payloads.Collection(1000)),
+    STRINGS(Payloads.Strings.class, () -> new Payloads.Strings(16 * 1024));
+
+    private final Class<?> clazz;
+    private final Supplier<Object> payload;
+
+    Shape(final Class<?> clazz, final Supplier<Object> payload) {
+      this.clazz = clazz;
+      this.payload = payload;
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public enum Codec {
+    JSON(JsonCodec::new),
+    CBOR(CborCodec::new),
+    JAVA(clazz -> new JavaSerializationCodec(clazz)),
+    JAVA_CLASS_TABLE(clazz -> JavaSerializationCodec.withClassTable(clazz, Payloads.Small.class)),
+    BINARY(BinaryCodec::new),
+    CBOR_DEFLATE(clazz -> CompressingCodec.wrap(new CborCodec<>(clazz)));
+
+    private final Function<Class, UserCodec> factory;
+
+    Codec(final Function<Class, UserCodec> factory) {
+      this.factory = factory;
+    }
+  }
+
+  @Param
+  public Codec codec;
+
+  @Param
+  public Shape shape;
+
+  private UserCodec<Object, Object> userCodec;
+  private Object payload;
+  private Buffer encoded;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    userCodec = codec.factory.apply(shape.clazz);
+    payload = shape.payload.get();
+    encoded = Buffer.buffer();
+    userCodec.encodeToWire(encoded, payload);
+  }
+
+  @Benchmark
+  public Buffer encode() {
+    final Buffer buffer = Buffer.buffer();
+    userCodec.encodeToWire(buffer, payload);
+    return buffer;
+  }
+
+  @Benchmark
+  public Object decode() {
+    return userCodec.decodeFromWire(0, encoded);
+  }
+}
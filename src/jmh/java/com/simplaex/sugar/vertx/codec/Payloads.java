@@ -0,0 +1,111 @@
+package com.simplaex.sugar.vertx.codec;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The payload shapes used in the codec benchmarks. All of them can be handled by every codec
+ * (public fields for jackson, serializable, no-args constructors for the binary codec).
+ */
+public final class Payloads {
+
+  private Payloads() {
+  }
+
+  public static class Small implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public int id;
+    public long timestamp;
+    public double value;
+    public boolean active;
+    public String name;
+
+    public Small() {
+    }
+
+    Small(final int i) {
+      this.id = i;
+      this.timestamp = 1_577_836_800_000L + i;
+      this.value = i * 0.25;
+      this.active = i % 2 == 0;
+      this.name = "item-" + i;
+    }
+  }
+
+  public static class Nested implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public String id;
+    public Small header;
+    public Small footer;
+    public List<Small> items;
+
+    public Nested() {
+    }
+
+    Nested(final int size) {
+      this.id = "nested";
+      this.header = new Small(0);
+      this.footer = new Small(1);
+      this.items = smalls(size);
+    }
+  }
+
+  public static class Collection implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public List<Small> items;
+    public List<Long> numbers;
+
+    public Collection() {
+    }
+
+    Collection(final int size) {
+      this.items = smalls(size);
+      this.numbers = new ArrayList<>(size);
+      for (int i = 0; i < size; i += 1) {
+        numbers.add((long) i * i);
+      }
+    }
+  }
+
+  public static class Strings implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public String title;
+    public String description;
+    public String body;
+    public List<String> tags;
+
+    public Strings() {
+    }
+
+    Strings(final int length) {
+      this.title = text("Title ", 64);
+      this.description = text("Beschreibung mit Umlauten äöü ", length / 4);
+      this.body = text("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ", length);
+      this.tags = new ArrayList<>();
+      for (int i = 0; i < 32; i += 1) {
+        tags.add("tag-" + i);
+      }
+    }
+  }
+
+  private static List<Small> smalls(final int size) {
+    final List<Small> items = new ArrayList<>(size);
+    for (int i = 0; i < size; i += 1) {
+      items.add(new Small(i));
+    }
+    return items;
+  }
+
+  private static String text(final String word, final int length) {
+    final StringBuilder builder = new StringBuilder(length + word.length());
+    while (builder.length() < length) {
+      builder.append(word);
+    }
+    return builder.toString();
+  }
+}
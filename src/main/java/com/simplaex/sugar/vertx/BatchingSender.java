@@ -0,0 +1,141 @@
+package com.simplaex.sugar.vertx;
+
+import com.simplaex.sugar.vertx.codec.BatchCodec;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects messages per address and sends them as a single event bus message once either a maximum
+ * number of messages is reached or the first message collected is older than a maximum delay.
+ * <p>
+ * The batch codec is registered with the event bus on first use (unless it has been registered already).
+ * Consumers need to register the same codec and can use {@link #unbatching(Handler)} to handle the
+ * individual messages.
+ */
+@Singleton
+@RequiredArgsConstructor(onConstructor = @__(@Inject))
+public class BatchingSender {
+
+  public static final int DEFAULT_MAX_ITEMS = 100;
+  public static final long DEFAULT_MAX_DELAY_MILLIS = 10;
+
+  private final Vertx vertx;
+
+  private final Map<String, Batch<?>> batches = new ConcurrentHashMap<>();
+  private final Set<String> registeredCodecs = ConcurrentHashMap.newKeySet();
+
+  public <T> void send(
+    @Nonnull final String address,
+    @Nonnull final BatchCodec<T> codec,
+    final T message
+  ) {
+    send(address, codec, message, DEFAULT_MAX_ITEMS, DEFAULT_MAX_DELAY_MILLIS);
+  }
+
+  /**
+   * Adds the message to the batch for the given address. The limits are taken from the first
+   * message which is sent to an address.
+   */
+  public <T> void send(
+    @Nonnull final String address,
+    @Nonnull final BatchCodec<T> codec,
+    final T message,
+    @Nonnegative final int maxItems,
+    @Nonnegative final long maxDelayMillis
+  ) {
+    if (registeredCodecs.add(codec.name())) {
+      try {
+        vertx.eventBus().registerCodec(codec);
+      } catch (final IllegalStateException exc) {
+        // already registered by the application
+      }
+    }
+    final Batch<?> batch = batches.computeIfAbsent(address, a -> new Batch<>(a, codec, maxItems, maxDelayMillis));
+    if (!batch.deliveryOptions.getCodecName().equals(codec.name())) {
+      throw new IllegalArgumentException("Address " + address + " is already used with codec " + batch.deliveryOptions.getCodecName());
+    }
+    @SuppressWarnings("unchecked") final Batch<T> typedBatch = (Batch<T>) batch;
+    typedBatch.add(message);
+  }
+
+  /**
+   * Sends all pending batches right away.
+   */
+  public void flush() {
+    batches.values().forEach(Batch::flush);
+  }
+
+  /**
+   * Creates a handler for batches which hands each message in a batch to the given handler.
+   */
+  @Nonnull
+  public static <T> Handler<Message<List<T>>> unbatching(@Nonnull final Handler<T> handler) {
+    return message -> message.body().forEach(handler::handle);
+  }
+
+  private final class Batch<T> {
+
+    private final String address;
+    private final DeliveryOptions deliveryOptions;
+    private final int maxItems;
+    private final long maxDelayMillis;
+
+    private List<T> items;
+    private long timerId = -1;
+
+    private Batch(
+      final String address,
+      final BatchCodec<?> codec,
+      final int maxItems,
+      final long maxDelayMillis
+    ) {
+      this.address = address;
+      this.deliveryOptions = new DeliveryOptions().setCodecName(codec.name());
+      this.maxItems = Math.max(1, maxItems);
+      this.maxDelayMillis = Math.max(1, maxDelayMillis);
+      this.items = new ArrayList<>(this.maxItems);
+    }
+
+    private synchronized void add(final T item) {
+      items.add(item);
+      if (items.size() >= maxItems) {
+        flush();
+      } else if (timerId == -1) {
+        timerId = vertx.setTimer(maxDelayMillis, this::flushOnTimer);
+      }
+    }
+
+    private synchronized void flushOnTimer(final long id) {
+      if (timerId == id) {
+        timerId = -1;
+        flush();
+      }
+    }
+
+    private synchronized void flush() {
+      if (timerId != -1) {
+        vertx.cancelTimer(timerId);
+        timerId = -1;
+      }
+      if (items.isEmpty()) {
+        return;
+      }
+      final List<T> batch = items;
+      items = new ArrayList<>(maxItems);
+      vertx.eventBus().send(address, batch, deliveryOptions);
+    }
+  }
+}
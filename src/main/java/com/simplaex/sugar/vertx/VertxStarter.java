@@ -249,12 +249,7 @@ public class VertxStarter<Config, MainVerticle extends Verticle> {
   }
 
   public static void initDatabase(@Nonnull final Logger log, @Nonnull final DatabaseConfig config) {
-    final String jdbcUrl = String.format(
-      "jdbc:postgresql://%s:%s/%s",
-      config.getDatabaseHost(),
-      config.getDatabasePort(),
-      config.getDatabaseDatabase()
-    );
+    final String jdbcUrl = config.getDatabaseJdbcUrl();
     log.info("Attempting Flyway migration using jdbcUrl={}", jdbcUrl);
     Flyway
       .configure()
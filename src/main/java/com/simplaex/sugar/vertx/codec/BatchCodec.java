@@ -0,0 +1,66 @@
+package com.simplaex.sugar.vertx.codec;
+
+import io.vertx.core.buffer.Buffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes a list of values using the codec for a single value. The wire format is the number of values
+ * as an int followed by each value prefixed with its encoded length as an int.
+ */
+public class BatchCodec<T> extends UserCodec<List<T>, List<T>> {
+
+  private final ValueCodec<T> codec;
+
+  public BatchCodec(@Nonnull final ValueCodec<T> codec) {
+    super("batch:" + codec.name());
+    this.codec = codec;
+  }
+
+  public static <T> BatchCodec<T> forCodec(@Nonnull final ValueCodec<T> codec) {
+    return new BatchCodec<>(codec);
+  }
+
+  @Override
+  public void encodeToWire(@Nonnull final Buffer buffer, final List<T> values) {
+    buffer.appendInt(values.size());
+    for (final T value : values) {
+      final int lengthPos = buffer.length();
+      buffer.appendInt(0);
+      codec.encodeToWire(buffer, value);
+      buffer.setInt(lengthPos, buffer.length() - lengthPos - 4);
+    }
+  }
+
+  @Override
+  public List<T> decodeFromWire(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    final int size = buffer.getInt(pos);
+    final List<T> values = new ArrayList<>(size);
+    int p = pos + 4;
+    for (int i = 0; i < size; i += 1) {
+      final int length = buffer.getInt(p);
+      values.add(codec.decodeFromWire(p + 4, buffer));
+      p += 4 + length;
+    }
+    return values;
+  }
+
+  @Override
+  public int encodedLength(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    final int size = buffer.getInt(pos);
+    int p = pos + 4;
+    for (int i = 0; i < size; i += 1) {
+      p += 4 + buffer.getInt(p);
+    }
+    return p - pos;
+  }
+
+  @Override
+  public List<T> transform(final List<T> values) {
+    // value codecs deliver the very same instances locally, so does this one.
+    return values;
+  }
+}
@@ -0,0 +1,622 @@
+package com.simplaex.sugar.vertx.codec;
+
+import io.vertx.core.buffer.Buffer;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encodes values in a compact binary format with a fixed layout that is derived from the fields of the class.
+ * <p>
+ * Field accessors are resolved once as method handles when the codec is created, so encoding and decoding
+ * involve no reflection and no field names. The wire format is the length of the encoded value as an int (-1 for
+ * {@code null}) followed by all non-static, non-transient fields (superclass fields first, ordered by name per class):
+ * primitives unboxed, boxed primitives with a presence byte, strings and byte arrays length prefixed (UTF-8),
+ * enums as their ordinal, lists with their size followed by their elements, and other classes recursively.
+ * <p>
+ * The class and all nested classes need a no-args constructor (which may be private) and at least one field;
+ * {@code Object}, interfaces, abstract classes and JDK classes other than the ones listed above are rejected when
+ * the codec is created. Both sides need to have the same version of the class as nothing about the layout is
+ * written to the wire.
+ */
+public class BinaryCodec<T> extends ValueCodec<T> {
+
+  private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+  private final ObjectLayout layout;
+
+  public BinaryCodec(@Nonnull final Class<T> clazz) {
+    super(clazz);
+    this.layout = new ObjectLayout(clazz, new HashSet<>());
+  }
+
+  public static <T> BinaryCodec<T> forClass(final Class<T> clazz) {
+    return new BinaryCodec<>(clazz);
+  }
+
+  @Override
+  @SneakyThrows
+  public void encodeToWire(@Nonnull final Buffer buffer, final T t) {
+    if (t == null) {
+      buffer.appendInt(-1);
+      return;
+    }
+    final int lengthPos = buffer.length();
+    buffer.appendInt(0);
+    layout.writeFields(buffer, t);
+    buffer.setInt(lengthPos, buffer.length() - lengthPos - 4);
+  }
+
+  @Override
+  @SneakyThrows
+  public T decodeFromWire(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    if (buffer.getInt(pos) < 0) {
+      return null;
+    }
+    final Cursor cursor = new Cursor(buffer, pos + 4);
+    @SuppressWarnings("unchecked") final T object = (T) layout.readFields(cursor);
+    return object;
+  }
+
+  @Override
+  public int encodedLength(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    return 4 + Math.max(0, buffer.getInt(pos));
+  }
+
+  private static final class Cursor {
+
+    private final Buffer buffer;
+    private int pos;
+
+    private Cursor(final Buffer buffer, final int pos) {
+      this.buffer = buffer;
+      this.pos = pos;
+    }
+
+    private int advance(final int length) {
+      final int current = pos;
+      pos += length;
+      return current;
+    }
+  }
+
+  /**
+   * Writes and reads a single field of an object.
+   */
+  private interface Slot {
+
+    void write(Buffer buffer, Object target) throws Throwable;
+
+    void read(Cursor cursor, Object target) throws Throwable;
+  }
+
+  /**
+   * Writes and reads a (nullable) value of a reference type.
+   */
+  private interface ValueLayout {
+
+    void write(Buffer buffer, Object value) throws Throwable;
+
+    Object read(Cursor cursor) throws Throwable;
+  }
+
+  private static final class ObjectLayout implements ValueLayout {
+
+    private final MethodHandle constructor;
+    private final Slot[] slots;
+
+    private ObjectLayout(final Class<?> clazz, final Set<Class<?>> enclosing) {
+      if (clazz == Object.class || clazz.isPrimitive() || clazz.isArray() || clazz.isInterface()
+        || Modifier.isAbstract(clazz.getModifiers())) {
+        throw new IllegalArgumentException("Unsupported type: " + clazz.getName());
+      }
+      if (clazz.getName().startsWith("java.") || clazz.getName().startsWith("javax.")) {
+        // the fields of JDK classes are implementation details, only the types handled explicitly are supported
+        throw new IllegalArgumentException("Unsupported JDK type: " + clazz.getName());
+      }
+      if (!enclosing.add(clazz)) {
+        throw new IllegalArgumentException("Recursive types are not supported: " + clazz.getName());
+      }
+      try {
+        final Constructor<?> ctor = clazz.getDeclaredConstructor();
+        ctor.setAccessible(true);
+        this.constructor = lookup.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+      } catch (final NoSuchMethodException | IllegalAccessException | RuntimeException exc) {
+        throw new IllegalArgumentException(clazz.getName() + " does not have an accessible no-args constructor", exc);
+      }
+      final List<Slot> slots = new ArrayList<>();
+      for (final Class<?> c : hierarchy(clazz)) {
+        final Field[] fields = c.getDeclaredFields();
+        Arrays.sort(fields, Comparator.comparing(Field::getName));
+        for (final Field field : fields) {
+          final int modifiers = field.getModifiers();
+          if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+            continue;
+          }
+          try {
+            field.setAccessible(true);
+          } catch (final RuntimeException exc) {
+            throw new IllegalArgumentException("Can not access field " + field, exc);
+          }
+          try {
+            slots.add(slot(field, enclosing));
+          } catch (final IllegalAccessException exc) {
+            throw new IllegalArgumentException("Can not access field " + field, exc);
+          }
+        }
+      }
+      if (slots.isEmpty()) {
+        throw new IllegalArgumentException(clazz.getName() + " does not have any non-static, non-transient fields");
+      }
+      this.slots = slots.toArray(new Slot[0]);
+      enclosing.remove(clazz);
+    }
+
+    private void writeFields(final Buffer buffer, final Object value) throws Throwable {
+      for (final Slot slot : slots) {
+        slot.write(buffer, value);
+      }
+    }
+
+    private Object readFields(final Cursor cursor) throws Throwable {
+      final Object value = (Object) constructor.invokeExact();
+      for (final Slot slot : slots) {
+        slot.read(cursor, value);
+      }
+      return value;
+    }
+
+    @Override
+    public void write(final Buffer buffer, final Object value) throws Throwable {
+      if (value == null) {
+        buffer.appendByte((byte) 0);
+        return;
+      }
+      buffer.appendByte((byte) 1);
+      writeFields(buffer, value);
+    }
+
+    @Override
+    public Object read(final Cursor cursor) throws Throwable {
+      if (cursor.buffer.getByte(cursor.advance(1)) == 0) {
+        return null;
+      }
+      return readFields(cursor);
+    }
+  }
+
+  private static List<Class<?>> hierarchy(final Class<?> clazz) {
+    final List<Class<?>> classes = new ArrayList<>();
+    for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+      classes.add(0, c);
+    }
+    return classes;
+  }
+
+  private static MethodHandle getter(final Field field, final Class<?> type) throws IllegalAccessException {
+    return lookup.unreflectGetter(field).asType(MethodType.methodType(type, Object.class));
+  }
+
+  private static MethodHandle setter(final Field field, final Class<?> type) throws IllegalAccessException {
+    return lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, type));
+  }
+
+  private static Slot slot(final Field field, final Set<Class<?>> enclosing) throws IllegalAccessException {
+    final Class<?> type = field.getType();
+    if (type == int.class) {
+      final MethodHandle getter = getter(field, int.class);
+      final MethodHandle setter = setter(field, int.class);
+      return new Slot() {
+        @Override
+        public void write(final Buffer buffer, final Object target) throws Throwable {
+          buffer.appendInt((int) getter.invokeExact(target));
+        }
+
+        @Override
+        public void read(final Cursor cursor, final Object target) throws Throwable {
+          setter.invokeExact(target, cursor.buffer.getInt(cursor.advance(4)));
+        }
+      };
+    }
+    if (type == long.class) {
+      final MethodHandle getter = getter(field, long.class);
+      final MethodHandle setter = setter(field, long.class);
+      return new Slot() {
+        @Override
+        public void write(final Buffer buffer, final Object target) throws Throwable {
+          buffer.appendLong((long) getter.invokeExact(target));
+        }
+
+        @Override
+        public void read(final Cursor cursor, final Object target) throws Throwable {
+          setter.invokeExact(target, cursor.buffer.getLong(cursor.advance(8)));
+        }
+      };
+    }
+    if (type == double.class) {
+      final MethodHandle getter = getter(field, double.class);
+      final MethodHandle setter = setter(field, double.class);
+      return new Slot() {
+        @Override
+        public void write(final Buffer buffer, final Object target) throws Throwable {
+          buffer.appendDouble((double) getter.invokeExact(target));
+        }
+
+        @Override
+        public void read(final Cursor cursor, final Object target) throws Throwable {
+          setter.invokeExact(target, cursor.buffer.getDouble(cursor.advance(8)));
+        }
+      };
+    }
+    if (type == float.class) {
+      final MethodHandle getter = getter(field, float.class);
+      final MethodHandle setter = setter(field, float.class);
+      return new Slot() {
+        @Override
+        public void write(final Buffer buffer, final Object target) throws Throwable {
+          buffer.appendFloat((float) getter.invokeExact(target));
+        }
+
+        @Override
+        public void read(final Cursor cursor, final Object target) throws Throwable {
+          setter.invokeExact(target, cursor.buffer.getFloat(cursor.advance(4)));
+        }
+      };
+    }
+    if (type == boolean.class) {
+      final MethodHandle getter = getter(field, boolean.class);
+      final MethodHandle setter = setter(field, boolean.class);
+      return new Slot() {
+        @Override
+        public void write(final Buffer buffer, final Object target) throws Throwable {
+          buffer.appendByte((boolean) getter.invokeExact(target) ? (byte) 1 : (byte) 0);
+        }
+
+        @Override
+        public void read(final Cursor cursor, final Object target) throws Throwable {
+          setter.invokeExact(target, cursor.buffer.getByte(cursor.advance(1)) != 0);
+        }
+      };
+    }
+    if (type == byte.class) {
+      final MethodHandle getter = getter(field, byte.class);
+      final MethodHandle setter = setter(field, byte.class);
+      return new Slot() {
+        @Override
+        public void write(final Buffer buffer, final Object target) throws Throwable {
+          buffer.appendByte((byte) getter.invokeExact(target));
+        }
+
+        @Override
+        public void read(final Cursor cursor, final Object target) throws Throwable {
+          setter.invokeExact(target, cursor.buffer.getByte(cursor.advance(1)));
+        }
+      };
+    }
+    if (type == short.class) {
+      final MethodHandle getter = getter(field, short.class);
+      final MethodHandle setter = setter(field, short.class);
+      return new Slot() {
+        @Override
+        public void write(final Buffer buffer, final Object target) throws Throwable {
+          buffer.appendShort((short) getter.invokeExact(target));
+        }
+
+        @Override
+        public void read(final Cursor cursor, final Object target) throws Throwable {
+          setter.invokeExact(target, cursor.buffer.getShort(cursor.advance(2)));
+        }
+      };
+    }
+    if (type == char.class) {
+      final MethodHandle getter = getter(field, char.class);
+      final MethodHandle setter = setter(field, char.class);
+      return new Slot() {
+        @Override
+        public void write(final Buffer buffer, final Object target) throws Throwable {
+          buffer.appendShort((short) (char) getter.invokeExact(target));
+        }
+
+        @Override
+        public void read(final Cursor cursor, final Object target) throws Throwable {
+          setter.invokeExact(target, (char) cursor.buffer.getShort(cursor.advance(2)));
+        }
+      };
+    }
+    final ValueLayout valueLayout = valueLayout(field.getGenericType(), enclosing);
+    final MethodHandle getter = getter(field, Object.class);
+    final MethodHandle setter = setter(field, Object.class);
+    return new Slot() {
+      @Override
+      public void write(final Buffer buffer, final Object target) throws Throwable {
+        valueLayout.write(buffer, (Object) getter.invokeExact(target));
+      }
+
+      @Override
+      public void read(final Cursor cursor, final Object target) throws Throwable {
+        setter.invokeExact(target, valueLayout.read(cursor));
+      }
+    };
+  }
+
+  private static ValueLayout valueLayout(final Type genericType, final Set<Class<?>> enclosing) {
+    final Class<?> type = rawType(genericType);
+    if (type == String.class) {
+      return new StringLayout();
+    }
+    if (type == byte[].class) {
+      return new BytesLayout();
+    }
+    if (type.isEnum()) {
+      return new EnumLayout(type.getEnumConstants());
+    }
+    if (type == List.class) {
+      if (!(genericType instanceof ParameterizedType)) {
+        throw new IllegalArgumentException("Raw lists are not supported: " + genericType);
+      }
+      final Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+      return new ListLayout(valueLayout(elementType, enclosing));
+    }
+    if (type == Integer.class) {
+      return new BoxedLayout(4) {
+        @Override
+        void writeValue(final Buffer buffer, final Object value) {
+          buffer.appendInt((Integer) value);
+        }
+
+        @Override
+        Object readValue(final Buffer buffer, final int pos) {
+          return buffer.getInt(pos);
+        }
+      };
+    }
+    if (type == Long.class) {
+      return new BoxedLayout(8) {
+        @Override
+        void writeValue(final Buffer buffer, final Object value) {
+          buffer.appendLong((Long) value);
+        }
+
+        @Override
+        Object readValue(final Buffer buffer, final int pos) {
+          return buffer.getLong(pos);
+        }
+      };
+    }
+    if (type == Double.class) {
+      return new BoxedLayout(8) {
+        @Override
+        void writeValue(final Buffer buffer, final Object value) {
+          buffer.appendDouble((Double) value);
+        }
+
+        @Override
+        Object readValue(final Buffer buffer, final int pos) {
+          return buffer.getDouble(pos);
+        }
+      };
+    }
+    if (type == Float.class) {
+      return new BoxedLayout(4) {
+        @Override
+        void writeValue(final Buffer buffer, final Object value) {
+          buffer.appendFloat((Float) value);
+        }
+
+        @Override
+        Object readValue(final Buffer buffer, final int pos) {
+          return buffer.getFloat(pos);
+        }
+      };
+    }
+    if (type == Boolean.class) {
+      return new BoxedLayout(1) {
+        @Override
+        void writeValue(final Buffer buffer, final Object value) {
+          buffer.appendByte((Boolean) value ? (byte) 1 : (byte) 0);
+        }
+
+        @Override
+        Object readValue(final Buffer buffer, final int pos) {
+          return buffer.getByte(pos) != 0;
+        }
+      };
+    }
+    if (type == Byte.class) {
+      return new BoxedLayout(1) {
+        @Override
+        void writeValue(final Buffer buffer, final Object value) {
+          buffer.appendByte((Byte) value);
+        }
+
+        @Override
+        Object readValue(final Buffer buffer, final int pos) {
+          return buffer.getByte(pos);
+        }
+      };
+    }
+    if (type == Short.class) {
+      return new BoxedLayout(2) {
+        @Override
+        void writeValue(final Buffer buffer, final Object value) {
+          buffer.appendShort((Short) value);
+        }
+
+        @Override
+        Object readValue(final Buffer buffer, final int pos) {
+          return buffer.getShort(pos);
+        }
+      };
+    }
+    if (type == Character.class) {
+      return new BoxedLayout(2) {
+        @Override
+        void writeValue(final Buffer buffer, final Object value) {
+          buffer.appendShort((short) (char) (Character) value);
+        }
+
+        @Override
+        Object readValue(final Buffer buffer, final int pos) {
+          return (char) buffer.getShort(pos);
+        }
+      };
+    }
+    try {
+      return new ObjectLayout(type, enclosing);
+    } catch (final IllegalArgumentException exc) {
+      throw new IllegalArgumentException("Unsupported field type: " + genericType, exc);
+    }
+  }
+
+  private static Class<?> rawType(final Type type) {
+    if (type instanceof Class) {
+      return (Class<?>) type;
+    }
+    if (type instanceof ParameterizedType) {
+      return (Class<?>) ((ParameterizedType) type).getRawType();
+    }
+    throw new IllegalArgumentException("Unsupported field type: " + type);
+  }
+
+  @RequiredArgsConstructor
+  private abstract static class BoxedLayout implements ValueLayout {
+
+    private final int size;
+
+    abstract void writeValue(Buffer buffer, Object value);
+
+    abstract Object readValue(Buffer buffer, int pos);
+
+    @Override
+    public void write(final Buffer buffer, final Object value) {
+      if (value == null) {
+        buffer.appendByte((byte) 0);
+        return;
+      }
+      buffer.appendByte((byte) 1);
+      writeValue(buffer, value);
+    }
+
+    @Override
+    public Object read(final Cursor cursor) {
+      if (cursor.buffer.getByte(cursor.advance(1)) == 0) {
+        return null;
+      }
+      return readValue(cursor.buffer, cursor.advance(size));
+    }
+  }
+
+  private static final class StringLayout implements ValueLayout {
+
+    @Override
+    public void write(final Buffer buffer, final Object value) {
+      if (value == null) {
+        buffer.appendInt(-1);
+        return;
+      }
+      final byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+      buffer.appendInt(bytes.length);
+      buffer.appendBytes(bytes);
+    }
+
+    @Override
+    public Object read(final Cursor cursor) {
+      final int length = cursor.buffer.getInt(cursor.advance(4));
+      if (length < 0) {
+        return null;
+      }
+      final int start = cursor.advance(length);
+      return cursor.buffer.getString(start, start + length, StandardCharsets.UTF_8.name());
+    }
+  }
+
+  private static final class BytesLayout implements ValueLayout {
+
+    @Override
+    public void write(final Buffer buffer, final Object value) {
+      if (value == null) {
+        buffer.appendInt(-1);
+        return;
+      }
+      final byte[] bytes = (byte[]) value;
+      buffer.appendInt(bytes.length);
+      buffer.appendBytes(bytes);
+    }
+
+    @Override
+    public Object read(final Cursor cursor) {
+      final int length = cursor.buffer.getInt(cursor.advance(4));
+      if (length < 0) {
+        return null;
+      }
+      final int start = cursor.advance(length);
+      return cursor.buffer.getBytes(start, start + length);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static final class EnumLayout implements ValueLayout {
+
+    private final Object[] constants;
+
+    @Override
+    public void write(final Buffer buffer, final Object value) {
+      buffer.appendInt(value == null ? -1 : ((Enum<?>) value).ordinal());
+    }
+
+    @Override
+    public Object read(final Cursor cursor) {
+      final int ordinal = cursor.buffer.getInt(cursor.advance(4));
+      return ordinal < 0 ? null : constants[ordinal];
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static final class ListLayout implements ValueLayout {
+
+    private final ValueLayout elementLayout;
+
+    @Override
+    public void write(final Buffer buffer, final Object value) throws Throwable {
+      if (value == null) {
+        buffer.appendInt(-1);
+        return;
+      }
+      final List<?> list = (List<?>) value;
+      buffer.appendInt(list.size());
+      for (final Object element : list) {
+        elementLayout.write(buffer, element);
+      }
+    }
+
+    @Override
+    public Object read(final Cursor cursor) throws Throwable {
+      final int size = cursor.buffer.getInt(cursor.advance(4));
+      if (size < 0) {
+        return null;
+      }
+      final List<Object> list = new ArrayList<>(size);
+      for (int i = 0; i < size; i += 1) {
+        list.add(elementLayout.read(cursor));
+      }
+      return list;
+    }
+  }
+}
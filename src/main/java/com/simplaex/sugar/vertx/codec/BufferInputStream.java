@@ -0,0 +1,76 @@
+package com.simplaex.sugar.vertx.codec;
+
+import io.vertx.core.buffer.Buffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.InputStream;
+
+/**
+ * An InputStream view on the region [start, end) of a vertx buffer. Nothing is copied up front,
+ * bulk reads are served directly from the underlying buffer.
+ */
+final class BufferInputStream extends InputStream {
+
+  @Nonnull
+  private final Buffer buffer;
+  private final int end;
+  private int position;
+  private int mark;
+
+  BufferInputStream(@Nonnull final Buffer buffer, @Nonnegative final int start, @Nonnegative final int end) {
+    this.buffer = buffer;
+    this.end = end;
+    this.position = start;
+    this.mark = start;
+  }
+
+  @Override
+  public int read() {
+    if (position >= end) {
+      return -1;
+    }
+    return buffer.getUnsignedByte(position++);
+  }
+
+  @Override
+  public int read(@Nonnull final byte[] bytes, final int offset, final int length) {
+    if (length == 0) {
+      return 0;
+    }
+    final int count = Math.min(length, end - position);
+    if (count <= 0) {
+      return -1;
+    }
+    buffer.getBytes(position, position + count, bytes, offset);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public long skip(final long n) {
+    final int count = (int) Math.max(0, Math.min(n, end - position));
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return end - position;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public void mark(final int readLimit) {
+    mark = position;
+  }
+
+  @Override
+  public void reset() {
+    position = mark;
+  }
+}
@@ -0,0 +1,27 @@
+package com.simplaex.sugar.vertx.codec;
+
+import io.vertx.core.buffer.Buffer;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nonnull;
+import java.io.OutputStream;
+
+/**
+ * An OutputStream view on a vertx buffer which appends everything written to the end of the buffer.
+ */
+@RequiredArgsConstructor
+final class BufferOutputStream extends OutputStream {
+
+  @Nonnull
+  private final Buffer buffer;
+
+  @Override
+  public void write(final int b) {
+    buffer.appendByte((byte) b);
+  }
+
+  @Override
+  public void write(@Nonnull final byte[] bytes, final int offset, final int length) {
+    buffer.appendBytes(bytes, offset, length);
+  }
+}
@@ -0,0 +1,24 @@
+package com.simplaex.sugar.vertx.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import lombok.experimental.UtilityClass;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+@UtilityClass
+class Buffers {
+
+  /**
+   * A view on the region [start, start + length) of the buffer, without copying. The byte buf behind a vertx
+   * buffer may be shared with the buffer it was sliced from, so the region is located relative to its reader
+   * index rather than to the start of its backing array.
+   */
+  @Nonnull
+  static ByteBuffer nioBuffer(@Nonnull final Buffer buffer, @Nonnegative final int start, @Nonnegative final int length) {
+    final ByteBuf byteBuf = buffer.getByteBuf();
+    return byteBuf.nioBuffer(byteBuf.readerIndex() + start, length);
+  }
+}
@@ -0,0 +1,73 @@
+package com.simplaex.sugar.vertx.codec;
+
+import com.simplaex.sugar.vertx.metrics.Histogram;
+import io.vertx.core.json.JsonObject;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Encode and decode times (in nanoseconds) and bytes written and read per codec name,
+ * as recorded by {@link MeasuredCodec}.
+ */
+public class CodecMetrics {
+
+  private static final CodecMetrics global = new CodecMetrics();
+
+  private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+  @Getter
+  @Setter
+  private volatile boolean enabled = true;
+
+  /**
+   * The metrics instance used by {@link MeasuredCodec#wrap(UserCodec)}.
+   */
+  @Nonnull
+  public static CodecMetrics global() {
+    return global;
+  }
+
+  @Nonnull
+  public Stats forCodec(@Nonnull final String codecName) {
+    return stats.computeIfAbsent(codecName, __ -> new Stats());
+  }
+
+  @Nonnull
+  public JsonObject toJson() {
+    final JsonObject json = new JsonObject();
+    stats.forEach((name, s) -> json.put(name, s.toJson()));
+    return json;
+  }
+
+  public static final class Stats {
+
+    private final Histogram encodeNanos = new Histogram();
+    private final Histogram decodeNanos = new Histogram();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+
+    void recordEncode(final long nanos, final int bytes) {
+      encodeNanos.record(nanos);
+      bytesWritten.add(bytes);
+    }
+
+    void recordDecode(final long nanos, final int bytes) {
+      decodeNanos.record(nanos);
+      bytesRead.add(bytes);
+    }
+
+    @Nonnull
+    public JsonObject toJson() {
+      return new JsonObject()
+        .put("encodeNanos", encodeNanos.toJson())
+        .put("decodeNanos", decodeNanos.toJson())
+        .put("bytesWritten", bytesWritten.sum())
+        .put("bytesRead", bytesRead.sum());
+    }
+  }
+}
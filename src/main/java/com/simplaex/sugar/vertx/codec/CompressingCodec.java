@@ -0,0 +1,153 @@
+package com.simplaex.sugar.vertx.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import lombok.Getter;
+import lombok.SneakyThrows;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wraps another value codec and deflates the encoded payload if it is at least {@link #getThreshold()} bytes long.
+ * <p>
+ * The wire format is a single flag byte. If it is 0 the payload of the wrapped codec follows as is. If it is 1
+ * the length of the uncompressed payload and the length of the compressed payload follow as ints, and then
+ * the compressed payload. The codec has the same name as the wrapped codec, so it can be registered in its
+ * place without changing any senders, and it can itself be wrapped by a {@link BatchCodec}. Local deliveries
+ * are never compressed.
+ * <p>
+ * The wrapped codec encodes into a scratch buffer which is reused per thread (a vertx buffer can not be
+ * truncated, so the payload can not be encoded into the target buffer and replaced by its compressed form).
+ */
+public class CompressingCodec<T> extends ValueCodec<T> {
+
+  public static final int DEFAULT_THRESHOLD = 1024;
+
+  private static final byte UNCOMPRESSED = 0;
+  private static final byte COMPRESSED = 1;
+
+  /**
+   * Scratch buffers which grew beyond this size are not kept for reuse.
+   */
+  private static final int MAX_RETAINED_SCRATCH = 1 << 20;
+
+  private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(Deflater::new);
+  private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+  private static final ThreadLocal<byte[]> chunks = ThreadLocal.withInitial(() -> new byte[8192]);
+  private static final ThreadLocal<ByteBuf> scratches = new ThreadLocal<>();
+
+  private final ValueCodec<T> codec;
+
+  @Getter
+  private final int threshold;
+
+  private final int level;
+
+  public CompressingCodec(
+    @Nonnull final ValueCodec<T> codec,
+    @Nonnegative final int threshold,
+    final int level
+  ) {
+    super(codec.getForClass());
+    this.codec = codec;
+    this.threshold = threshold;
+    this.level = level;
+  }
+
+  public static <T> CompressingCodec<T> wrap(@Nonnull final ValueCodec<T> codec) {
+    return wrap(codec, DEFAULT_THRESHOLD);
+  }
+
+  public static <T> CompressingCodec<T> wrap(@Nonnull final ValueCodec<T> codec, @Nonnegative final int threshold) {
+    return new CompressingCodec<>(codec, threshold, Deflater.BEST_SPEED);
+  }
+
+  @Override
+  public void encodeToWire(@Nonnull final Buffer buffer, final T t) {
+    // taken out of the thread local while in use, so that nested compressing codecs get a scratch buffer of their own
+    final ByteBuf retained = scratches.get();
+    final ByteBuf scratch = retained != null ? retained : Unpooled.buffer(threshold * 2);
+    scratches.remove();
+    try {
+      codec.encodeToWire(Buffer.buffer(scratch), t);
+      final int length = scratch.readableBytes();
+      if (length < threshold) {
+        buffer.appendByte(UNCOMPRESSED);
+        buffer.appendBuffer(Buffer.buffer(scratch));
+        return;
+      }
+      buffer.appendByte(COMPRESSED);
+      buffer.appendInt(length);
+      final int compressedLengthPos = buffer.length();
+      buffer.appendInt(0);
+      final Deflater deflater = deflaters.get();
+      try {
+        deflater.setLevel(level);
+        deflater.setInput(scratch.array(), scratch.arrayOffset() + scratch.readerIndex(), length);
+        deflater.finish();
+        final byte[] chunk = chunks.get();
+        while (!deflater.finished()) {
+          final int count = deflater.deflate(chunk);
+          buffer.appendBytes(chunk, 0, count);
+        }
+      } finally {
+        deflater.reset();
+      }
+      buffer.setInt(compressedLengthPos, buffer.length() - compressedLengthPos - 4);
+    } finally {
+      if (scratch.capacity() <= MAX_RETAINED_SCRATCH) {
+        scratch.clear();
+        scratches.set(scratch);
+      }
+    }
+  }
+
+  @Override
+  @SneakyThrows
+  public T decodeFromWire(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    if (buffer.getByte(pos) == UNCOMPRESSED) {
+      return codec.decodeFromWire(pos + 1, buffer);
+    }
+    final int length = buffer.getInt(pos + 1);
+    final int compressedLength = buffer.getInt(pos + 5);
+    final int start = pos + 9;
+    final byte[] bytes = new byte[length];
+    final Inflater inflater = inflaters.get();
+    try {
+      final ByteBuffer region = Buffers.nioBuffer(buffer, start, compressedLength);
+      if (region.hasArray()) {
+        inflater.setInput(region.array(), region.arrayOffset() + region.position(), compressedLength);
+      } else {
+        inflater.setInput(buffer.getBytes(start, start + compressedLength));
+      }
+      int count = 0;
+      while (count < length && !inflater.finished()) {
+        final int inflated = inflater.inflate(bytes, count, length - count);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        count += inflated;
+      }
+      if (count != length) {
+        throw new DataFormatException("Expected " + length + " bytes after inflating but got " + count);
+      }
+    } finally {
+      inflater.reset();
+    }
+    return codec.decodeFromWire(0, Buffer.buffer(Unpooled.wrappedBuffer(bytes)));
+  }
+
+  @Override
+  public int encodedLength(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    if (buffer.getByte(pos) == UNCOMPRESSED) {
+      return 1 + codec.encodedLength(pos + 1, buffer);
+    }
+    return 9 + buffer.getInt(pos + 5);
+  }
+}
@@ -0,0 +1,14 @@
+package com.simplaex.sugar.vertx.codec;
+
+import com.google.inject.AbstractModule;
+
+/**
+ * Registers all value codecs bound in the injector as default codecs with the event bus when the injector is created.
+ */
+public class DefaultCodecModule extends AbstractModule {
+
+  @Override
+  protected void configure() {
+    bind(DefaultCodecs.class).asEagerSingleton();
+  }
+}
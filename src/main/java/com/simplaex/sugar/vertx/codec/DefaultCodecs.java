@@ -0,0 +1,83 @@
+package com.simplaex.sugar.vertx.codec;
+
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import io.vertx.core.eventbus.EventBus;
+import lombok.extern.log4j.Log4j2;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Registers value codecs as default codecs for the class they encode, such that messages of that class
+ * can be sent without specifying a codec name in the delivery options.
+ * <p>
+ * When created by Guice (see {@link DefaultCodecModule}) all value codecs bound in the injector are registered.
+ */
+@Log4j2
+public class DefaultCodecs {
+
+  @Inject
+  DefaultCodecs(@Nonnull final EventBus eventBus, @Nonnull final Injector injector) {
+    registerAll(eventBus, injector);
+  }
+
+  /**
+   * Registers all value codecs which are bound in the given injector. Only the keys of the bindings are
+   * inspected, no other objects are instantiated.
+   * <p>
+   * A codec bound under several keys is registered once. Codecs which collide with one registered before,
+   * either for the same class or under the same name (as wrappers like {@link CompressingCodec} and
+   * {@link MeasuredCodec} reuse the name of the codec they wrap), are skipped with a warning naming both bindings.
+   */
+  public static void registerAll(@Nonnull final EventBus eventBus, @Nonnull final Injector injector) {
+    final Map<ValueCodec<?>, Key<?>> registered = new IdentityHashMap<>();
+    final Map<Class<?>, Key<?>> byClass = new HashMap<>();
+    final Map<String, Key<?>> byName = new HashMap<>();
+    for (final Map.Entry<Key<?>, Binding<?>> entry : injector.getBindings().entrySet()) {
+      final Key<?> key = entry.getKey();
+      if (!ValueCodec.class.isAssignableFrom(key.getTypeLiteral().getRawType())) {
+        continue;
+      }
+      final ValueCodec<?> codec = (ValueCodec<?>) injector.getInstance(key);
+      if (registered.containsKey(codec)) {
+        log.debug("Codec {} bound as {} is already registered as {}", codec.name(), key, registered.get(codec));
+        continue;
+      }
+      final Key<?> sameClass = byClass.get(codec.getForClass());
+      final Key<?> sameName = byName.get(codec.name());
+      if (sameClass != null || sameName != null) {
+        log.warn(
+          "Not registering codec {} for {} bound as {}, it collides with the codec bound as {}",
+          codec.name(), codec.getForClass(), key, sameClass != null ? sameClass : sameName
+        );
+        continue;
+      }
+      if (register(eventBus, codec)) {
+        registered.put(codec, key);
+        byClass.put(codec.getForClass(), key);
+        byName.put(codec.name(), key);
+      }
+    }
+  }
+
+  /**
+   * Registers the codec as the default codec for its class, unless the event bus already has a codec for that
+   * class or by that name (for example one registered by hand), in which case a warning is logged. Returns
+   * whether the codec was registered.
+   */
+  public static <T> boolean register(@Nonnull final EventBus eventBus, @Nonnull final ValueCodec<T> codec) {
+    log.info("Registering default codec {} for {}", codec.name(), codec.getForClass());
+    try {
+      eventBus.registerDefaultCodec(codec.getForClass(), codec);
+      return true;
+    } catch (final IllegalStateException exc) {
+      log.warn("Not registering codec {} for {}: {}", codec.name(), codec.getForClass(), exc.getMessage());
+      return false;
+    }
+  }
+}
@@ -1,49 +1,136 @@
 package com.simplaex.sugar.vertx.codec;
 
-import com.simplaex.bedrock.Numbers;
 import io.vertx.core.buffer.Buffer;
 import lombok.SneakyThrows;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Encodes values using java serialization. The wire format is the length of the serialized value
+ * as an int followed by the serialized value itself.
+ * <p>
+ * Optionally a table of classes can be given which both the sending and the receiving side know about
+ * (see {@link #withClassTable(Class, Class[])}). Class descriptors of these classes are then written as
+ * an index into that table instead of being repeated in full in every message. All nodes have to use
+ * the same table in the same order and the same versions of the classes in it.
+ */
 public class JavaSerializationCodec<T extends Serializable> extends ValueCodec<T> {
 
+  private static final int INLINE_DESCRIPTOR = -1;
+
+  private final Class<?>[] classTable;
+  private final Map<Class<?>, Integer> classIndex;
+
   public JavaSerializationCodec(final Class<T> clazz) {
+    this(clazz, new Class<?>[0]);
+  }
+
+  private JavaSerializationCodec(final Class<T> clazz, final Class<?>[] classTable) {
     super(clazz);
+    this.classTable = classTable;
+    this.classIndex = new HashMap<>();
+    for (int i = 0; i < classTable.length; i += 1) {
+      classIndex.putIfAbsent(classTable[i], i);
+    }
   }
 
   public static <T extends Serializable> JavaSerializationCodec<T> forClass(final Class<T> clazz) {
     return new JavaSerializationCodec<>(clazz);
   }
 
+  /**
+   * Creates a codec which keeps the class descriptors of the given class and all the other classes
+   * in a shared table instead of writing them into every message.
+   */
+  public static <T extends Serializable> JavaSerializationCodec<T> withClassTable(
+    @Nonnull final Class<T> clazz,
+    @Nonnull final Class<?>... otherClasses
+  ) {
+    final Class<?>[] classTable = new Class<?>[otherClasses.length + 1];
+    classTable[0] = clazz;
+    System.arraycopy(otherClasses, 0, classTable, 1, otherClasses.length);
+    return new JavaSerializationCodec<>(clazz, classTable);
+  }
+
   @Override
   @SneakyThrows
   public void encodeToWire(@Nonnull final Buffer buffer, final T t) {
-    new ObjectOutputStream(new OutputStream() {
-      @Override
-      public void write(final int b) {
-        buffer.appendByte((byte) b);
-      }
-    }).writeObject(t);
+    final int lengthPos = buffer.length();
+    buffer.appendInt(0);
+    try (ObjectOutputStream s = new TableObjectOutputStream(new BufferOutputStream(buffer))) {
+      s.writeObject(t);
+    }
+    buffer.setInt(lengthPos, buffer.length() - lengthPos - 4);
   }
 
   @Override
   @SneakyThrows
   public T decodeFromWire(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
-    final ObjectInputStream s = new ObjectInputStream(new InputStream() {
-      int p = pos;
-
-      @Override
-      public int read() {
-        if (p >= buffer.length()) {
-          return -1;
-        }
-        return Numbers.byteToInt(buffer.getByte(p++));
+    final int len = buffer.getInt(pos);
+    final int start = pos + 4;
+    try (ObjectInputStream s = new TableObjectInputStream(new BufferInputStream(buffer, start, start + len))) {
+      @SuppressWarnings("unchecked") final T object = (T) s.readObject();
+      return object;
+    }
+  }
+
+  @Override
+  public int encodedLength(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    return 4 + buffer.getInt(pos);
+  }
+
+  private final class TableObjectOutputStream extends ObjectOutputStream {
+
+    TableObjectOutputStream(final OutputStream out) throws IOException {
+      super(out);
+    }
+
+    @Override
+    protected void writeClassDescriptor(final ObjectStreamClass desc) throws IOException {
+      if (classTable.length == 0) {
+        super.writeClassDescriptor(desc);
+        return;
+      }
+      final Integer index = classIndex.get(desc.forClass());
+      if (index == null) {
+        writeInt(INLINE_DESCRIPTOR);
+        super.writeClassDescriptor(desc);
+      } else {
+        writeInt(index);
       }
-    });
-    @SuppressWarnings("unchecked") final T object = (T) s.readObject();
-    return object;
+    }
+  }
+
+  private final class TableObjectInputStream extends ObjectInputStream {
+
+    TableObjectInputStream(final InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+      if (classTable.length == 0) {
+        return super.readClassDescriptor();
+      }
+      final int index = readInt();
+      if (index == INLINE_DESCRIPTOR) {
+        return super.readClassDescriptor();
+      }
+      if (index < 0 || index >= classTable.length) {
+        throw new InvalidClassException("Unknown class table index " + index + " in " + Arrays.toString(classTable));
+      }
+      return ObjectStreamClass.lookup(classTable[index]);
+    }
+
+    @Override
+    protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      final Class<?> clazz = desc.forClass();
+      return clazz != null ? clazz : super.resolveClass(desc);
+    }
   }
 }
@@ -0,0 +1,69 @@
+package com.simplaex.sugar.vertx.codec;
+
+import io.vertx.core.buffer.Buffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Wraps another codec and records encode/decode times and the number of bytes written/read
+ * in {@link CodecMetrics}. The codec has the same name as the wrapped codec, so it can be
+ * registered in its place.
+ * <p>
+ * Bytes read are the {@link UserCodec#encodedLength(int, Buffer)} of the decoded value, so they are
+ * counted correctly for values embedded in a larger buffer, too.
+ */
+public class MeasuredCodec<S, R> extends UserCodec<S, R> {
+
+  private final UserCodec<S, R> codec;
+  private final CodecMetrics metrics;
+  private final CodecMetrics.Stats stats;
+
+  public MeasuredCodec(@Nonnull final UserCodec<S, R> codec, @Nonnull final CodecMetrics metrics) {
+    super(codec.name());
+    this.codec = codec;
+    this.metrics = metrics;
+    this.stats = metrics.forCodec(codec.name());
+  }
+
+  public static <S, R> MeasuredCodec<S, R> wrap(@Nonnull final UserCodec<S, R> codec) {
+    return new MeasuredCodec<>(codec, CodecMetrics.global());
+  }
+
+  public static <S, R> MeasuredCodec<S, R> wrap(@Nonnull final UserCodec<S, R> codec, @Nonnull final CodecMetrics metrics) {
+    return new MeasuredCodec<>(codec, metrics);
+  }
+
+  @Override
+  public void encodeToWire(@Nonnull final Buffer buffer, final S s) {
+    if (!metrics.isEnabled()) {
+      codec.encodeToWire(buffer, s);
+      return;
+    }
+    final int start = buffer.length();
+    final long startNanos = System.nanoTime();
+    codec.encodeToWire(buffer, s);
+    stats.recordEncode(System.nanoTime() - startNanos, buffer.length() - start);
+  }
+
+  @Override
+  public R decodeFromWire(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    if (!metrics.isEnabled()) {
+      return codec.decodeFromWire(pos, buffer);
+    }
+    final long startNanos = System.nanoTime();
+    final R result = codec.decodeFromWire(pos, buffer);
+    stats.recordDecode(System.nanoTime() - startNanos, codec.encodedLength(pos, buffer));
+    return result;
+  }
+
+  @Override
+  public int encodedLength(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    return codec.encodedLength(pos, buffer);
+  }
+
+  @Override
+  public R transform(final S s) {
+    return codec.transform(s);
+  }
+}
@@ -2,36 +2,57 @@ package com.simplaex.sugar.vertx.codec;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.simplaex.sugar.vertx.codec.ValueCodec;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.vertx.core.buffer.Buffer;
 import lombok.SneakyThrows;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
 
+/**
+ * Encodes values using a jackson ObjectMapper. The wire format is the length of the encoded value
+ * as an int followed by the encoded value itself.
+ * <p>
+ * Values are serialized straight into the target buffer and the length prefix is filled in afterwards;
+ * decoding parses directly from the region of the buffer, so no intermediate byte arrays are allocated.
+ */
 public class ObjectMapperCodec<T> extends ValueCodec<T> {
 
-  private final ObjectMapper mapper;
+  private final ObjectReader reader;
+  private final ObjectWriter writer;
 
   public ObjectMapperCodec(@Nonnull final Class<T> clazz, @Nonnull final JsonFactory jsonFactory) {
     super(clazz);
-    this.mapper = new ObjectMapper(jsonFactory);
+    final ObjectMapper mapper = new ObjectMapper(jsonFactory);
+    this.reader = mapper.readerFor(clazz);
+    this.writer = mapper.writerFor(clazz);
   }
 
   @Override
   @SneakyThrows
   public void encodeToWire(@Nonnull final Buffer buffer, final T t) {
-    final byte[] bytes = mapper.writeValueAsBytes(t);
-    buffer.appendInt(bytes.length);
-    buffer.appendBytes(bytes);
+    final int lengthPos = buffer.length();
+    buffer.appendInt(0);
+    writer.writeValue(new BufferOutputStream(buffer), t);
+    buffer.setInt(lengthPos, buffer.length() - lengthPos - 4);
   }
 
   @Override
   @SneakyThrows
   public T decodeFromWire(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
     final int len = buffer.getInt(pos);
-    final byte[] bytes = new byte[len];
-    buffer.getBytes(pos, pos + 4 + len, bytes);
-    return mapper.readValue(bytes, getForClass());
+    final int start = pos + 4;
+    final ByteBuffer region = Buffers.nioBuffer(buffer, start, len);
+    if (region.hasArray()) {
+      return reader.readValue(region.array(), region.arrayOffset() + region.position(), len);
+    }
+    return reader.readValue(new BufferInputStream(buffer, start, start + len));
+  }
+
+  @Override
+  public int encodedLength(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    return 4 + buffer.getInt(pos);
   }
 }
@@ -1,8 +1,12 @@
 package com.simplaex.sugar.vertx.codec;
 
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.MessageCodec;
 import lombok.RequiredArgsConstructor;
 
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
 @RequiredArgsConstructor
 public abstract class UserCodec<S, R> implements MessageCodec<S, R> {
 
@@ -17,4 +21,13 @@ public abstract class UserCodec<S, R> implements MessageCodec<S, R> {
   public final byte systemCodecID() {
     return -1;
   }
+
+  /**
+   * The number of bytes the value encoded at the given position takes up. Unless overridden this is everything
+   * up to the end of the buffer, which is where vertx places the message body.
+   */
+  @Nonnegative
+  public int encodedLength(@Nonnegative final int pos, @Nonnull final Buffer buffer) {
+    return buffer.length() - pos;
+  }
 }
@@ -14,8 +14,11 @@ public abstract class ValueCodec<T> extends UserCodec<T, T> {
     this.forClass = forClass;
   }
 
+  /**
+   * Values are delivered as they are to local consumers, i.e. they are never serialized within the same vertx instance.
+   */
   @Override
-  public T transform(final T t) {
+  public final T transform(final T t) {
     return t;
   }
 }
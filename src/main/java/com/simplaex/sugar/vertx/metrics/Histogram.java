@@ -0,0 +1,88 @@
+package com.simplaex.sugar.vertx.metrics;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram with exponential (power of two) buckets.
+ * <p>
+ * Recording a value only increments striped counters, so it is cheap even under contention. Percentiles
+ * are approximated by the upper bound of the bucket they fall into.
+ */
+public final class Histogram {
+
+  private static final int BUCKETS = 64;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public Histogram() {
+    for (int i = 0; i < BUCKETS; i += 1) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(@Nonnegative final long value) {
+    final long v = Math.max(0, value);
+    buckets[v == 0 ? 0 : BUCKETS - 1 - Long.numberOfLeadingZeros(v)].increment();
+    count.increment();
+    sum.add(v);
+    max.accumulate(v);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSum() {
+    return sum.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Approximates the given percentile (0 &lt; p &lt;= 1) by the upper bound of the bucket it falls into.
+   */
+  public long percentile(final double p) {
+    final long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i += 1) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    final long rank = (long) Math.ceil(total * p);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i += 1) {
+      seen += counts[i];
+      if (seen >= rank && counts[i] > 0) {
+        return Math.min(upperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  private static long upperBound(final int bucket) {
+    return bucket >= BUCKETS - 2 ? Long.MAX_VALUE : (2L << bucket) - 1;
+  }
+
+  @Nonnull
+  public JsonObject toJson() {
+    final long n = getCount();
+    return new JsonObject()
+      .put("count", n)
+      .put("sum", getSum())
+      .put("mean", n == 0 ? 0 : getSum() / n)
+      .put("max", getMax())
+      .put("p50", percentile(0.5))
+      .put("p90", percentile(0.9))
+      .put("p99", percentile(0.99));
+  }
+}
@@ -0,0 +1,4 @@
+/**
+ * lightweight metrics which can be recorded on hot paths and reported as json.
+ */
+package com.simplaex.sugar.vertx.metrics;
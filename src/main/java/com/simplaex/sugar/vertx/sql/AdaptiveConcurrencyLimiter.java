@@ -0,0 +1,207 @@
+package com.simplaex.sugar.vertx.sql;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import lombok.Getter;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of concurrent operations using additive increase / multiplicative decrease.
+ * <p>
+ * A permit is held for as long as the operation lasts, the limit however is driven by the latency samples
+ * reported for it (see {@link Permit#sample(long, boolean)}), so that holding a permit for a long time is not
+ * taken as a sign of overload. Every sample within the latency threshold raises the limit by 1 / limit, i.e. by
+ * about one per round of samples; every sample which takes longer or signals overload multiplies it by
+ * {@link #BACKOFF_RATIO}. The limit stays between the given minimum and maximum, so with both being the same
+ * the limiter merely bounds the number of concurrent and queued operations. Operations beyond the
+ * limit wait in a bounded queue; they are rejected right away if the queue is full and rejected once
+ * they have waited longer than the maximum queue time, so callers fail fast instead of piling up on an
+ * overloaded database. Queued operations are granted or rejected on the vertx context they were
+ * queued from.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+  public static final double BACKOFF_RATIO = 0.9;
+
+  private final Vertx vertx;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueueSize;
+  private final long latencyThresholdNanos;
+  private final long maxQueueTimeMillis;
+
+  private final Deque<Waiter> queue = new ArrayDeque<>();
+  private double limit;
+  private int inFlight = 0;
+
+  @Getter
+  private volatile long rejected = 0;
+
+  public AdaptiveConcurrencyLimiter(
+    @Nonnull final Vertx vertx,
+    @Nonnegative final int minLimit,
+    @Nonnegative final int maxLimit,
+    @Nonnegative final int maxQueueSize,
+    @Nonnegative final long latencyThresholdMillis,
+    @Nonnegative final long maxQueueTimeMillis
+  ) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("Invalid limits min=" + minLimit + " max=" + maxLimit);
+    }
+    this.vertx = vertx;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.maxQueueSize = maxQueueSize;
+    this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+    this.maxQueueTimeMillis = Math.max(1, maxQueueTimeMillis);
+    this.limit = maxLimit;
+  }
+
+  /**
+   * A granted slot which has to be released exactly once when the operation is done.
+   */
+  public final class Permit {
+
+    private boolean released = false;
+
+    /**
+     * Adjusts the limit by the latency of a part of the operation (for example one statement), and whether
+     * it failed in a way which indicates overload (like a timeout, as opposed to a failure of its own).
+     */
+    public void sample(@Nonnegative final long latencyNanos, final boolean overload) {
+      AdaptiveConcurrencyLimiter.this.sample(latencyNanos, overload);
+    }
+
+    public void release() {
+      AdaptiveConcurrencyLimiter.this.release(this);
+    }
+  }
+
+  private static final class Waiter {
+    private final Handler<Permit> onAcquired;
+    private final Handler<Throwable> onRejected;
+    @Nullable
+    private final Context context = Vertx.currentContext();
+    private long timerId;
+
+    private Waiter(final Handler<Permit> onAcquired, final Handler<Throwable> onRejected) {
+      this.onAcquired = onAcquired;
+      this.onRejected = onRejected;
+    }
+
+    private void run(final Runnable runnable) {
+      if (context == null || context == Vertx.currentContext()) {
+        runnable.run();
+      } else {
+        context.runOnContext(ignored -> runnable.run());
+      }
+    }
+  }
+
+  /**
+   * Invokes onAcquired with a permit once the operation may run, or onRejected with a
+   * {@link RejectedExecutionException} if the database is considered overloaded.
+   */
+  public void acquire(@Nonnull final Handler<Permit> onAcquired, @Nonnull final Handler<Throwable> onRejected) {
+    final Permit permit;
+    synchronized (this) {
+      if (inFlight < limit() && queue.isEmpty()) {
+        inFlight += 1;
+        permit = new Permit();
+      } else if (queue.size() < maxQueueSize) {
+        final Waiter waiter = new Waiter(onAcquired, onRejected);
+        waiter.timerId = vertx.setTimer(maxQueueTimeMillis, ignored -> expire(waiter));
+        queue.add(waiter);
+        return;
+      } else {
+        permit = null;
+        rejected += 1;
+      }
+    }
+    if (permit != null) {
+      onAcquired.handle(permit);
+    } else {
+      onRejected.handle(new RejectedExecutionException("Too many queued operations, limit=" + getLimit()));
+    }
+  }
+
+  private void expire(@Nonnull final Waiter waiter) {
+    synchronized (this) {
+      if (!queue.remove(waiter)) {
+        return;
+      }
+      rejected += 1;
+    }
+    waiter.run(() -> waiter.onRejected.handle(new RejectedExecutionException("Timed out waiting for a slot, limit=" + getLimit())));
+  }
+
+  private void sample(final long latencyNanos, final boolean overload) {
+    final List<Waiter> granted;
+    synchronized (this) {
+      if (overload || latencyNanos > latencyThresholdNanos) {
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+      } else {
+        limit = Math.min(maxLimit, limit + 1.0 / limit);
+      }
+      granted = grant();
+    }
+    run(granted);
+  }
+
+  private void release(@Nonnull final Permit permit) {
+    final List<Waiter> granted;
+    synchronized (this) {
+      if (permit.released) {
+        return;
+      }
+      permit.released = true;
+      inFlight -= 1;
+      granted = grant();
+    }
+    run(granted);
+  }
+
+  private List<Waiter> grant() {
+    final List<Waiter> granted = new ArrayList<>();
+    while (!queue.isEmpty() && inFlight < limit()) {
+      final Waiter waiter = queue.poll();
+      vertx.cancelTimer(waiter.timerId);
+      granted.add(waiter);
+      inFlight += 1;
+    }
+    return granted;
+  }
+
+  private void run(@Nonnull final List<Waiter> granted) {
+    for (final Waiter waiter : granted) {
+      final Permit granting = new Permit();
+      waiter.run(() -> waiter.onAcquired.handle(granting));
+    }
+  }
+
+  private int limit() {
+    return (int) limit;
+  }
+
+  public synchronized int getLimit() {
+    return limit();
+  }
+
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  public synchronized int getQueued() {
+    return queue.size();
+  }
+}
@@ -14,13 +14,52 @@ public class AsyncSQLClientModule extends SimpleModule {
   @Provides
   @Singleton
   public AsyncSQLClient getAsyncSQLClient(final Vertx vertx, final DatabaseConfig config) {
+    return createClient(vertx, config, config.getDatabaseHost(), config.getDatabasePort());
+  }
+
+  /**
+   * Creates a pooled, concurrency limited client for the given host using the remaining settings from the config.
+   */
+  public static AsyncSQLClient createClient(
+    final Vertx vertx,
+    final DatabaseConfig config,
+    final String host,
+    final int port
+  ) {
+    if (config.getDatabaseDriver() == DatabaseDriver.PIPELINED) {
+      final int maxConcurrency = config.getDatabaseMaxPoolSize()
+        + config.getDatabasePipelinedConnections() * config.getDatabasePipeliningLimit();
+      return limited(vertx, new PipelinedPgClient(vertx, config, host, port), maxConcurrency, config);
+    }
     final JsonObject clientConfig = new JsonObject()
       .put("username", config.getDatabaseUsername())
       .put("password", config.getDatabasePassword())
       .put("database", config.getDatabaseDatabase())
-      .put("port", config.getDatabasePort())
-      .put("host", config.getDatabaseHost());
-    return PostgreSQLClient.createShared(vertx, clientConfig);
+      .put("port", port)
+      .put("host", host)
+      .put("maxPoolSize", config.getDatabaseMaxPoolSize())
+      .put("maxConnectionRetries", config.getDatabaseMaxConnectionRetries())
+      .put("connectionRetryDelay", config.getDatabaseConnectionRetryDelayMillis())
+      .put("connectTimeout", config.getDatabaseConnectTimeoutMillis())
+      .put("queryTimeout", config.getDatabaseQueryTimeoutMillis());
+    return limited(vertx, PostgreSQLClient.createShared(vertx, clientConfig, host + ":" + port), config.getDatabaseMaxPoolSize(), config);
+  }
+
+  private static AsyncSQLClient limited(
+    final Vertx vertx,
+    final AsyncSQLClient client,
+    final int maxConcurrency,
+    final DatabaseConfig config
+  ) {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+      vertx,
+      config.isDatabaseConcurrencyLimitAdaptive() ? 1 : maxConcurrency,
+      maxConcurrency,
+      config.getDatabaseMaxWaitQueueSize(),
+      config.getDatabaseLatencyThresholdMillis(),
+      config.getDatabaseMaxWaitQueueMillis()
+    );
+    return new ConcurrencyLimitedSQLClient(client, limiter);
   }
 
 }
@@ -0,0 +1,264 @@
+package com.simplaex.sugar.vertx.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import lombok.extern.log4j.Log4j2;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Loads rows into a table using COPY ... FROM STDIN in CSV format, see {@link QueryUtil#copyIn(String, List, ReadStream)}.
+ * <p>
+ * Neither of the asynchronous clients supports the COPY protocol, so the rows are sent over a JDBC connection of
+ * its own on a worker thread. Rows are encoded into chunks of {@link #CHUNK_SIZE} bytes; while a chunk is being
+ * written the source stream is paused, so that no more than about two chunks are held in memory. On failure the
+ * copy is cancelled and nothing is loaded.
+ * <p>
+ * The encoding of rows is covered by unit tests, there is no automated check against a database. To try it
+ * out, copy a stream of a few rows including nulls, quotes, json and byte arrays into a scratch table and
+ * compare them with what a SELECT of the table returns.
+ */
+@Log4j2
+public final class BulkCopy {
+
+  public static final int CHUNK_SIZE = 1 << 16;
+
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private final Vertx vertx;
+  private final DatabaseConfig config;
+  private final String statement;
+  private final ReadStream<JsonArray> rows;
+
+  private Handler<Throwable> onFailure;
+
+  @Nullable
+  private Connection connection;
+  @Nullable
+  private CopyIn copyIn;
+  private Buffer chunk = Buffer.buffer(CHUNK_SIZE);
+  private boolean writing;
+  private boolean ended;
+  private boolean failed;
+  private Handler<Long> handler;
+
+  BulkCopy(
+    @Nonnull final Vertx vertx,
+    @Nonnull final DatabaseConfig config,
+    @Nonnull final String statement,
+    @Nonnull final ReadStream<JsonArray> rows
+  ) {
+    this.vertx = vertx;
+    this.config = config;
+    this.statement = statement;
+    this.rows = rows;
+    this.onFailure = exc -> log.error("Error copying rows using statement={}", statement, exc);
+  }
+
+  @Nonnull
+  public BulkCopy onFailure(@Nonnull final Handler<Throwable> handler) {
+    onFailure = handler;
+    return this;
+  }
+
+  /**
+   * Starts copying; the handler receives the number of rows loaded once the source stream has ended.
+   */
+  public void execute(@Nonnull final Handler<Long> handler) {
+    this.handler = handler;
+    rows.pause();
+    blocking(() -> {
+      connection = DriverManager.getConnection(
+        config.getDatabaseJdbcUrl(),
+        config.getDatabaseUsername(),
+        config.getDatabasePassword()
+      );
+      return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(statement);
+    }, copyInF -> {
+      if (copyInF.failed()) {
+        fail(copyInF.cause());
+        return;
+      }
+      copyIn = copyInF.result();
+      rows.exceptionHandler(this::fail);
+      rows.endHandler(ignored -> {
+        ended = true;
+        flush();
+      });
+      rows.handler(row -> {
+        appendCsv(chunk, row);
+        if (chunk.length() >= CHUNK_SIZE) {
+          rows.pause();
+          flush();
+        }
+      });
+      rows.resume();
+    });
+  }
+
+  private void flush() {
+    if (writing || failed) {
+      return;
+    }
+    final Buffer data = chunk;
+    chunk = Buffer.buffer(CHUNK_SIZE);
+    writing = true;
+    final boolean last = ended;
+    blocking(() -> {
+      if (data.length() > 0) {
+        copyIn.writeToCopy(data.getBytes(), 0, data.length());
+      }
+      return last ? copyIn.endCopy() : -1L;
+    }, writeF -> {
+      writing = false;
+      if (writeF.failed()) {
+        fail(writeF.cause());
+      } else if (last) {
+        closeConnection();
+        try {
+          handler.handle(writeF.result());
+        } catch (final Exception exc) {
+          onFailure.handle(exc);
+        }
+      } else if (ended) {
+        flush();
+      } else {
+        rows.resume();
+      }
+    });
+  }
+
+  private void fail(@Nonnull final Throwable cause) {
+    if (failed) {
+      return;
+    }
+    failed = true;
+    rows.pause();
+    log.error("Failed copying rows using statement={}", statement, cause);
+    final CopyIn current = copyIn;
+    blocking(() -> {
+      if (current != null && current.isActive()) {
+        current.cancelCopy();
+      }
+      return null;
+    }, cancelF -> {
+      closeConnection();
+      onFailure.handle(cause);
+    });
+  }
+
+  private void closeConnection() {
+    final Connection current = connection;
+    connection = null;
+    if (current != null) {
+      blocking(() -> {
+        current.close();
+        return null;
+      }, closeF -> {
+        if (closeF.failed()) {
+          log.warn("Failed closing copy connection", closeF.cause());
+        }
+      });
+    }
+  }
+
+  private <T> void blocking(@Nonnull final Callable<T> callable, @Nonnull final Handler<AsyncResult<T>> resultHandler) {
+    vertx.executeBlocking(promise -> {
+      try {
+        promise.complete(callable.call());
+      } catch (final Exception exc) {
+        promise.fail(exc);
+      }
+    }, true, resultHandler);
+  }
+
+  /**
+   * Builds the COPY statement for the given table and columns. Each name is quoted as an identifier, the table
+   * name is split at dots into schema and table first (so {@code analytics.events} becomes
+   * {@code "analytics"."events"}). Quoting keeps names which are keywords or contain odd characters from
+   * breaking the statement, and the names are taken as they are, i.e. case sensitive.
+   */
+  @Nonnull
+  static String statement(@Nonnull final String table, @Nonnull final List<String> columns) {
+    final StringBuilder builder = new StringBuilder("COPY ");
+    final String[] parts = table.split("\\.", -1);
+    for (int i = 0; i < parts.length; i += 1) {
+      if (i > 0) {
+        builder.append('.');
+      }
+      appendIdentifier(builder, parts[i]);
+    }
+    builder.append(" (");
+    for (int i = 0; i < columns.size(); i += 1) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      appendIdentifier(builder, columns.get(i));
+    }
+    return builder.append(") FROM STDIN WITH (FORMAT csv)").toString();
+  }
+
+  private static void appendIdentifier(@Nonnull final StringBuilder builder, @Nonnull final String name) {
+    if (name.isEmpty()) {
+      throw new IllegalArgumentException("Empty identifier in COPY statement");
+    }
+    builder.append('"').append(name.replace("\"", "\"\"")).append('"');
+  }
+
+  /**
+   * Appends the row as a line in the CSV format of COPY: null as an empty unquoted field, byte arrays and
+   * buffers in the hex format of bytea, strings and json quoted, everything else as is. Note that
+   * {@link JsonArray#add(byte[])} stores byte arrays as base64 strings, so binary values have to be put into
+   * rows created from a list to be loaded as bytea.
+   */
+  static void appendCsv(@Nonnull final Buffer buffer, @Nonnull final JsonArray row) {
+    for (int i = 0; i < row.size(); i += 1) {
+      if (i > 0) {
+        buffer.appendByte((byte) ',');
+      }
+      final Object value = row.getValue(i);
+      if (value == null) {
+        continue;
+      }
+      if (value instanceof Number || value instanceof Boolean) {
+        buffer.appendString(value.toString());
+        continue;
+      }
+      if (value instanceof byte[] || value instanceof Buffer) {
+        appendHex(buffer, value instanceof byte[] ? (byte[]) value : ((Buffer) value).getBytes());
+        continue;
+      }
+      final String string = value instanceof JsonObject
+        ? ((JsonObject) value).encode()
+        : value instanceof JsonArray ? ((JsonArray) value).encode() : value.toString();
+      buffer.appendByte((byte) '"');
+      buffer.appendString(string.replace("\"", "\"\""));
+      buffer.appendByte((byte) '"');
+    }
+    buffer.appendByte((byte) '\n');
+  }
+
+  private static void appendHex(@Nonnull final Buffer buffer, @Nonnull final byte[] bytes) {
+    final byte[] hex = new byte[2 + 2 * bytes.length];
+    hex[0] = '\\';
+    hex[1] = 'x';
+    for (int i = 0; i < bytes.length; i += 1) {
+      hex[2 + 2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+      hex[3 + 2 * i] = HEX_DIGITS[bytes[i] & 0xf];
+    }
+    buffer.appendBytes(hex);
+  }
+}
@@ -0,0 +1,133 @@
+package com.simplaex.sugar.vertx.sql;
+
+import com.github.mauricio.async.db.exceptions.ConnectionNotConnectedException;
+import com.github.mauricio.async.db.exceptions.ConnectionTimeoutedException;
+import com.github.mauricio.async.db.pool.PoolExhaustedException;
+import com.github.mauricio.async.db.postgresql.exceptions.NotConnectedException;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.VertxException;
+import io.vertx.ext.asyncsql.AsyncSQLClient;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.pgclient.PgException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Puts an {@link AdaptiveConcurrencyLimiter} in front of getConnection. A permit is held until the connection
+ * is closed, while the limit is driven by the latency of the individual statements: a connection held for a
+ * long time, as by a cursor stream or a transaction, is no sign of overload by itself. Failed statements only
+ * count as overload if they timed out or lost their connection (see {@link #isOverload(Throwable)}), not if the
+ * database rejected them, for example because of a constraint violation.
+ */
+@RequiredArgsConstructor
+public class ConcurrencyLimitedSQLClient implements AsyncSQLClient {
+
+  @Nonnull
+  private final AsyncSQLClient delegate;
+
+  @Getter
+  @Nonnull
+  private final AdaptiveConcurrencyLimiter limiter;
+
+  @Override
+  public SQLClient getConnection(@Nonnull final Handler<AsyncResult<SQLConnection>> handler) {
+    limiter.acquire(
+      permit -> getConnection(permit, handler),
+      exc -> handler.handle(Future.failedFuture(exc))
+    );
+    return this;
+  }
+
+  private void getConnection(
+    @Nonnull final AdaptiveConcurrencyLimiter.Permit permit,
+    @Nonnull final Handler<AsyncResult<SQLConnection>> handler
+  ) {
+    final long requestedAt = System.nanoTime();
+    delegate.getConnection(connF -> {
+        if (connF.failed()) {
+          permit.sample(System.nanoTime() - requestedAt, isOverload(connF.cause()));
+          permit.release();
+          handler.handle(Future.failedFuture(connF.cause()));
+          return;
+        }
+        handler.handle(Future.succeededFuture(new PermitConnection(connF.result(), permit)));
+    });
+  }
+
+  /**
+   * Whether the failure means the database (or the way to it) is overloaded: timeouts, lost or refused
+   * connections and an exhausted pool, but not errors reported by the database for the statement itself.
+   */
+  static boolean isOverload(@Nullable final Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+      if (cause instanceof TimeoutException
+        || cause instanceof SQLTimeoutException
+        || cause instanceof SQLTransientConnectionException
+        || cause instanceof SQLNonTransientConnectionException
+        || cause instanceof IOException
+        || cause instanceof ConnectionTimeoutedException
+        || cause instanceof ConnectionNotConnectedException
+        || cause instanceof NotConnectedException
+        || cause instanceof PoolExhaustedException
+        || cause instanceof VertxException) {
+        return true;
+      }
+      if (cause instanceof PgException) {
+        // class 53: insufficient resources, class 57: operator intervention (including statement timeouts)
+        final String code = ((PgException) cause).getCode();
+        return code != null && (code.startsWith("53") || code.startsWith("57"));
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void close(final Handler<AsyncResult<Void>> handler) {
+    delegate.close(handler);
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  /**
+   * Samples the latency of every statement and releases the permit once the connection is closed.
+   */
+  private static final class PermitConnection extends ForwardingSQLConnection {
+
+    private final AdaptiveConcurrencyLimiter.Permit permit;
+
+    private PermitConnection(final SQLConnection delegate, final AdaptiveConcurrencyLimiter.Permit permit) {
+      super(delegate);
+      this.permit = permit;
+    }
+
+    @Nonnull
+    @Override
+    protected <T> Handler<AsyncResult<T>> intercept(@Nonnull final Handler<AsyncResult<T>> handler) {
+      final long startedAt = System.nanoTime();
+      return result -> {
+        permit.sample(System.nanoTime() - startedAt, result.failed() && isOverload(result.cause()));
+        handler.handle(result);
+      };
+    }
+
+    @Override
+    public void close(final Handler<AsyncResult<Void>> handler) {
+      permit.release();
+      delegate.close(handler);
+    }
+  }
+}
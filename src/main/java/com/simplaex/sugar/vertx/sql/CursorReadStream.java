@@ -0,0 +1,243 @@
+package com.simplaex.sugar.vertx.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+import lombok.extern.log4j.Log4j2;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A read stream over the rows of a query which is backed by a server side cursor.
+ * <p>
+ * The query is executed once a handler is set: a connection is taken from the pool, a transaction is started
+ * and a cursor is declared for the query. Rows are then fetched in chunks of fetchSize rows whenever all
+ * previously fetched rows have been handed out, so that at most one chunk is held in memory at any time.
+ * The transaction is committed and the connection is returned to the pool when the stream ends, fails or
+ * is closed.
+ */
+@Log4j2
+public final class CursorReadStream<T> implements ReadStream<T> {
+
+  private static final String CURSOR = "vertx_sugar_cursor";
+
+  private final Consumer<Handler<AsyncResult<SQLConnection>>> connector;
+  private final String query;
+  private final JsonArray values;
+  private final int fetchSize;
+  private final Function<List<String>, Function<JsonArray, T>> mapperForColumns;
+  private final Handler<Throwable> onFailure;
+
+  private final Deque<JsonArray> rows = new ArrayDeque<>();
+  private long demand = Long.MAX_VALUE;
+  private boolean started;
+  private boolean fetching;
+  private boolean exhausted;
+  private boolean closed;
+
+  @Nullable
+  private SQLConnection connection;
+  @Nullable
+  private Function<JsonArray, T> mapper;
+  @Nullable
+  private Handler<T> handler;
+  @Nullable
+  private Handler<Void> endHandler;
+  @Nullable
+  private Handler<Throwable> exceptionHandler;
+
+  CursorReadStream(
+    @Nonnull final Consumer<Handler<AsyncResult<SQLConnection>>> connector,
+    @Nonnull final String query,
+    @Nonnull final JsonArray values,
+    final int fetchSize,
+    @Nonnull final Function<List<String>, Function<JsonArray, T>> mapperForColumns,
+    @Nonnull final Handler<Throwable> onFailure
+  ) {
+    this.connector = connector;
+    this.query = query;
+    this.values = values;
+    this.fetchSize = Math.max(1, fetchSize);
+    this.mapperForColumns = mapperForColumns;
+    this.onFailure = onFailure;
+  }
+
+  @Override
+  public synchronized CursorReadStream<T> exceptionHandler(@Nullable final Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public synchronized CursorReadStream<T> handler(@Nullable final Handler<T> handler) {
+    this.handler = handler;
+    if (handler == null) {
+      close();
+    } else if (!started) {
+      started = true;
+      open();
+    }
+    return this;
+  }
+
+  @Override
+  public synchronized CursorReadStream<T> pause() {
+    demand = 0;
+    return this;
+  }
+
+  @Override
+  public CursorReadStream<T> resume() {
+    return fetch(Long.MAX_VALUE);
+  }
+
+  @Override
+  public synchronized CursorReadStream<T> fetch(final long amount) {
+    if (amount > 0) {
+      demand = demand > Long.MAX_VALUE - amount ? Long.MAX_VALUE : demand + amount;
+      drain();
+    }
+    return this;
+  }
+
+  @Override
+  public synchronized CursorReadStream<T> endHandler(@Nullable final Handler<Void> endHandler) {
+    this.endHandler = endHandler;
+    return this;
+  }
+
+  /**
+   * Stops streaming and releases the connection without handing out the remaining rows.
+   */
+  public synchronized void close() {
+    release(true);
+  }
+
+  private void open() {
+    connector.accept(connF -> {
+      if (connF.failed()) {
+        log.error("Failed getting a connection for streaming query={}", query, connF.cause());
+        fail(connF.cause());
+        return;
+      }
+      synchronized (this) {
+        if (closed) {
+          connF.result().close();
+          return;
+        }
+        connection = connF.result();
+      }
+      final SQLConnection conn = connF.result();
+      conn.setAutoCommit(false, autoCommitF -> {
+        if (autoCommitF.failed()) {
+          fail(autoCommitF.cause());
+          return;
+        }
+        conn.updateWithParams("DECLARE " + CURSOR + " NO SCROLL CURSOR FOR " + query, values, declareF -> {
+          if (declareF.failed()) {
+            log.error("Failed declaring cursor for query={}", query, declareF.cause());
+            fail(declareF.cause());
+            return;
+          }
+          synchronized (this) {
+            drain();
+          }
+        });
+      });
+    });
+  }
+
+  private void drain() {
+    while (demand > 0 && !rows.isEmpty() && !closed) {
+      if (demand != Long.MAX_VALUE) {
+        demand -= 1;
+      }
+      final JsonArray row = rows.poll();
+      final Handler<T> h = handler;
+      if (h != null) {
+        try {
+          h.handle(mapper.apply(row));
+        } catch (final Exception exc) {
+          fail(exc);
+          return;
+        }
+      }
+    }
+    if (closed || !rows.isEmpty() || fetching || connection == null) {
+      return;
+    }
+    if (exhausted) {
+      final Handler<Void> h = endHandler;
+      release(true);
+      if (h != null) {
+        h.handle(null);
+      }
+    } else if (demand > 0) {
+      fetchNext();
+    }
+  }
+
+  private void fetchNext() {
+    fetching = true;
+    final SQLConnection conn = connection;
+    conn.query("FETCH FORWARD " + fetchSize + " FROM " + CURSOR, resultF -> {
+      synchronized (this) {
+        fetching = false;
+        if (resultF.failed()) {
+          log.error("Failed fetching rows for query={}", query, resultF.cause());
+          fail(resultF.cause());
+          return;
+        }
+        final ResultSet resultSet = resultF.result();
+        if (mapper == null) {
+          mapper = mapperForColumns.apply(resultSet.getColumnNames());
+        }
+        rows.addAll(resultSet.getResults());
+        exhausted = resultSet.getNumRows() < fetchSize;
+        drain();
+      }
+    });
+  }
+
+  private synchronized void fail(final Throwable cause) {
+    if (closed) {
+      return;
+    }
+    release(false);
+    final Handler<Throwable> h = exceptionHandler;
+    (h != null ? h : onFailure).handle(cause);
+  }
+
+  private void release(final boolean commit) {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    rows.clear();
+    final SQLConnection conn = connection;
+    connection = null;
+    if (conn == null) {
+      return;
+    }
+    final Handler<AsyncResult<Void>> closeConnection = result -> {
+      if (result.failed()) {
+        log.warn("Failed finishing transaction of streaming query={}", query, result.cause());
+      }
+      conn.close();
+    };
+    if (commit) {
+      conn.commit(closeConnection);
+    } else {
+      conn.rollback(closeConnection);
+    }
+  }
+}
@@ -2,6 +2,9 @@ package com.simplaex.sugar.vertx.sql;
 
 import com.simplaex.sugar.guice.BindInstance;
 
+import java.util.Collections;
+import java.util.List;
+
 @BindInstance
 public interface DatabaseConfig {
 
@@ -16,4 +19,127 @@ public interface DatabaseConfig {
   String getDatabaseDatabase();
 
   String getDatabaseSchema();
+
+  default String getDatabaseJdbcUrl() {
+    return String.format("jdbc:postgresql://%s:%s/%s", getDatabaseHost(), getDatabasePort(), getDatabaseDatabase());
+  }
+
+  default DatabaseDriver getDatabaseDriver() {
+    return DatabaseDriver.ASYNC;
+  }
+
+  /**
+   * The number of shared connections statements outside of transactions are pipelined over
+   * when using {@link DatabaseDriver#PIPELINED}.
+   */
+  default int getDatabasePipelinedConnections() {
+    return 2;
+  }
+
+  /**
+   * The maximum number of statements in flight on a single pipelined connection.
+   */
+  default int getDatabasePipeliningLimit() {
+    return 256;
+  }
+
+  /**
+   * Hosts of read replicas as "host" or "host:port" (the port defaults to {@link #getDatabasePort()}).
+   * Reads are spread over these hosts, see {@link ReadReplicaRouter}.
+   */
+  default List<String> getDatabaseReadReplicaHosts() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * The maximum number of connections in the pool, which is also the upper bound of the adaptive concurrency limit.
+   */
+  default int getDatabaseMaxPoolSize() {
+    return 10;
+  }
+
+  default int getDatabaseMaxConnectionRetries() {
+    return 0;
+  }
+
+  default long getDatabaseConnectionRetryDelayMillis() {
+    return 5000;
+  }
+
+  default long getDatabaseConnectTimeoutMillis() {
+    return 10000;
+  }
+
+  default long getDatabaseQueryTimeoutMillis() {
+    return 10000;
+  }
+
+  /**
+   * The maximum number of requests waiting for a connection once the concurrency limit is reached.
+   * Further requests fail right away.
+   */
+  default int getDatabaseMaxWaitQueueSize() {
+    return 1000;
+  }
+
+  /**
+   * Requests which waited longer than this for a connection fail instead of being executed.
+   */
+  default long getDatabaseMaxWaitQueueMillis() {
+    return 5000;
+  }
+
+  /**
+   * Whether the concurrency limit adapts to the load of the database (see {@link ConcurrencyLimitedSQLClient}),
+   * going down to a single connection. Otherwise it stays at the pool size and merely bounds the wait queue.
+   */
+  default boolean isDatabaseConcurrencyLimitAdaptive() {
+    return false;
+  }
+
+  /**
+   * Statements which take longer than this lower the adaptive concurrency limit, faster ones raise it again
+   * (see {@link AdaptiveConcurrencyLimiter}).
+   */
+  default long getDatabaseLatencyThresholdMillis() {
+    return 1000;
+  }
+
+  /**
+   * The maximum number of rows held by the {@link QueryResultCache} over all cached result sets.
+   */
+  default long getDatabaseResultCacheMaxRows() {
+    return 100000;
+  }
+
+  /**
+   * Queries taking at least this long are logged as slow queries (see {@link QueryMetrics}). 0 disables the slow query log.
+   */
+  default long getDatabaseSlowQueryThresholdMillis() {
+    return 1000;
+  }
+
+  /**
+   * The fraction of all other queries which are logged, between 0 (none) and 1 (all).
+   */
+  default double getDatabaseQueryLogSampleRate() {
+    return 0;
+  }
+
+  /**
+   * Concurrent executeUpdate calls with the same statement which arrive within this many milliseconds
+   * are executed as a single batch in a transaction (with the {@link DatabaseDriver#ASYNC} driver, which does
+   * not support batches, one after the other on a single connection), see {@link QueryUtil.Query#executeUpdate}.
+   * 0 disables write coalescing.
+   */
+  default long getDatabaseWriteCoalescingWindowMillis() {
+    return 0;
+  }
+
+  /**
+   * The maximum number of executeUpdate calls which are coalesced into a single batch.
+   */
+  default int getDatabaseWriteCoalescingMaxBatchSize() {
+    return 100;
+  }
 }
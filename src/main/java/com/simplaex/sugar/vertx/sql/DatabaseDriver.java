@@ -0,0 +1,17 @@
+package com.simplaex.sugar.vertx.sql;
+
+/**
+ * The client library used to talk to the database, see {@link DatabaseConfig#getDatabaseDriver()}.
+ */
+public enum DatabaseDriver {
+
+  /**
+   * The asynchronous MySQL / PostgreSQL client, which runs one statement at a time per connection.
+   */
+  ASYNC,
+
+  /**
+   * The reactive PostgreSQL client with command pipelining and prepared statement caching, see {@link PipelinedPgClient}.
+   */
+  PIPELINED
+}
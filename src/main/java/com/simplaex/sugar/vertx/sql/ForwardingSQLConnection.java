@@ -0,0 +1,196 @@
+package com.simplaex.sugar.vertx.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLOptions;
+import io.vertx.ext.sql.SQLRowStream;
+import io.vertx.ext.sql.TransactionIsolation;
+import io.vertx.ext.sql.UpdateResult;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * A connection which forwards all calls to another connection. Subclasses override the methods they are
+ * interested in, for example {@link #close(Handler)} to find out when the connection is given back, or
+ * {@link #intercept(Handler)} to observe the results of all operations.
+ */
+public class ForwardingSQLConnection implements SQLConnection {
+
+  protected final SQLConnection delegate;
+
+  public ForwardingSQLConnection(@Nonnull final SQLConnection delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Wraps the result handler of every forwarded operation except closing the connection; returns the
+   * given handler unless overridden.
+   */
+  @Nonnull
+  protected <T> Handler<AsyncResult<T>> intercept(@Nonnull final Handler<AsyncResult<T>> handler) {
+    return handler;
+  }
+
+  @Override
+  public SQLConnection setOptions(final SQLOptions options) {
+    delegate.setOptions(options);
+    return this;
+  }
+
+  @Override
+  public SQLConnection setAutoCommit(final boolean autoCommit, final Handler<AsyncResult<Void>> resultHandler) {
+    delegate.setAutoCommit(autoCommit, intercept(resultHandler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection execute(final String sql, final Handler<AsyncResult<Void>> resultHandler) {
+    delegate.execute(sql, intercept(resultHandler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection query(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+    delegate.query(sql, intercept(resultHandler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection queryStream(final String sql, final Handler<AsyncResult<SQLRowStream>> handler) {
+    delegate.queryStream(sql, intercept(handler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection queryWithParams(
+    final String sql,
+    final JsonArray params,
+    final Handler<AsyncResult<ResultSet>> resultHandler
+  ) {
+    delegate.queryWithParams(sql, params, intercept(resultHandler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection queryStreamWithParams(
+    final String sql,
+    final JsonArray params,
+    final Handler<AsyncResult<SQLRowStream>> handler
+  ) {
+    delegate.queryStreamWithParams(sql, params, intercept(handler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection update(final String sql, final Handler<AsyncResult<UpdateResult>> resultHandler) {
+    delegate.update(sql, intercept(resultHandler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection updateWithParams(
+    final String sql,
+    final JsonArray params,
+    final Handler<AsyncResult<UpdateResult>> resultHandler
+  ) {
+    delegate.updateWithParams(sql, params, intercept(resultHandler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection call(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+    delegate.call(sql, intercept(resultHandler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection callWithParams(
+    final String sql,
+    final JsonArray params,
+    final JsonArray outputs,
+    final Handler<AsyncResult<ResultSet>> resultHandler
+  ) {
+    delegate.callWithParams(sql, params, outputs, intercept(resultHandler));
+    return this;
+  }
+
+  @Override
+  public void close(final Handler<AsyncResult<Void>> handler) {
+    delegate.close(handler);
+  }
+
+  @Override
+  public void close() {
+    close(ignored -> {
+    });
+  }
+
+  @Override
+  public SQLConnection commit(final Handler<AsyncResult<Void>> handler) {
+    delegate.commit(intercept(handler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection rollback(final Handler<AsyncResult<Void>> handler) {
+    delegate.rollback(intercept(handler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection setQueryTimeout(final int timeoutInSeconds) {
+    delegate.setQueryTimeout(timeoutInSeconds);
+    return this;
+  }
+
+  @Override
+  public SQLConnection batch(final List<String> sqlStatements, final Handler<AsyncResult<List<Integer>>> handler) {
+    delegate.batch(sqlStatements, intercept(handler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection batchWithParams(
+    final String sqlStatement,
+    final List<JsonArray> args,
+    final Handler<AsyncResult<List<Integer>>> handler
+  ) {
+    delegate.batchWithParams(sqlStatement, args, intercept(handler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection batchCallableWithParams(
+    final String sqlStatement,
+    final List<JsonArray> inArgs,
+    final List<JsonArray> outArgs,
+    final Handler<AsyncResult<List<Integer>>> handler
+  ) {
+    delegate.batchCallableWithParams(sqlStatement, inArgs, outArgs, intercept(handler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection setTransactionIsolation(
+    final TransactionIsolation isolation,
+    final Handler<AsyncResult<Void>> handler
+  ) {
+    delegate.setTransactionIsolation(isolation, intercept(handler));
+    return this;
+  }
+
+  @Override
+  public SQLConnection getTransactionIsolation(final Handler<AsyncResult<TransactionIsolation>> handler) {
+    delegate.getTransactionIsolation(intercept(handler));
+    return this;
+  }
+
+  @Override
+  public <N> N unwrap() {
+    return delegate.unwrap();
+  }
+}
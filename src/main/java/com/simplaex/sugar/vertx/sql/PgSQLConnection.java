@@ -0,0 +1,507 @@
+package com.simplaex.sugar.vertx.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLOptions;
+import io.vertx.ext.sql.SQLRowStream;
+import io.vertx.ext.sql.TransactionIsolation;
+import io.vertx.ext.sql.UpdateResult;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adapts the reactive PostgreSQL client to {@link SQLConnection}, see {@link PipelinedPgClient}.
+ * <p>
+ * Statements run on the shared connection until auto commit is switched off; from then on they run in a
+ * transaction on a connection of its own which is returned when this connection is closed. An open
+ * transaction is rolled back on close.
+ * <p>
+ * The shared connections call back on the context of the verticle which established them, so all results are
+ * handed back on the context this connection was requested from.
+ */
+final class PgSQLConnection implements SQLConnection {
+
+  private static final int MAX_REWRITTEN_STATEMENTS = 1024;
+
+  private static final Map<String, String> rewrittenStatements = new ConcurrentHashMap<>();
+
+  private final SqlConnection shared;
+  private final Pool transactionPool;
+  @Nullable
+  private final Context context;
+
+  private boolean autoCommit = true;
+  @Nullable
+  private SqlConnection exclusive;
+  @Nullable
+  private Transaction transaction;
+
+  PgSQLConnection(@Nonnull final SqlConnection shared, @Nonnull final Pool transactionPool, @Nullable final Context context) {
+    this.shared = shared;
+    this.transactionPool = transactionPool;
+    this.context = context;
+  }
+
+  private SqlClient client() {
+    if (exclusive == null) {
+      return shared;
+    }
+    if (!autoCommit && transaction == null) {
+      transaction = exclusive.begin();
+    }
+    return transaction != null ? transaction : exclusive;
+  }
+
+  @Override
+  public SQLConnection setOptions(final SQLOptions options) {
+    return this;
+  }
+
+  @Override
+  public SQLConnection setAutoCommit(final boolean autoCommit, final Handler<AsyncResult<Void>> resultHandler) {
+    if (autoCommit) {
+      this.autoCommit = true;
+      endTransaction(true, resultHandler);
+      return this;
+    }
+    if (exclusive != null) {
+      this.autoCommit = false;
+      respond(resultHandler, Future.succeededFuture());
+      return this;
+    }
+    transactionPool.getConnection(connF -> respond(exclusiveF -> {
+      if (exclusiveF.failed()) {
+        resultHandler.handle(Future.failedFuture(exclusiveF.cause()));
+        return;
+      }
+      exclusive = exclusiveF.result();
+      this.autoCommit = false;
+      resultHandler.handle(Future.succeededFuture());
+    }, connF));
+    return this;
+  }
+
+  @Override
+  public SQLConnection execute(final String sql, final Handler<AsyncResult<Void>> resultHandler) {
+    client().query(sql, resultF -> respond(resultHandler, resultF.map(rowSet -> null)));
+    return this;
+  }
+
+  @Override
+  public SQLConnection query(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+    client().query(sql, resultF -> respond(resultHandler, resultF.map(PgSQLConnection::toResultSet)));
+    return this;
+  }
+
+  @Override
+  public SQLConnection queryWithParams(
+    final String sql,
+    final JsonArray params,
+    final Handler<AsyncResult<ResultSet>> resultHandler
+  ) {
+    client().preparedQuery(rewrite(sql), toTuple(params), resultF -> respond(resultHandler, resultF.map(PgSQLConnection::toResultSet)));
+    return this;
+  }
+
+  @Override
+  public SQLConnection update(final String sql, final Handler<AsyncResult<UpdateResult>> resultHandler) {
+    client().query(sql, resultF -> respond(resultHandler, resultF.map(PgSQLConnection::toUpdateResult)));
+    return this;
+  }
+
+  @Override
+  public SQLConnection updateWithParams(
+    final String sql,
+    final JsonArray params,
+    final Handler<AsyncResult<UpdateResult>> resultHandler
+  ) {
+    client().preparedQuery(rewrite(sql), toTuple(params), resultF -> respond(resultHandler, resultF.map(PgSQLConnection::toUpdateResult)));
+    return this;
+  }
+
+  @Override
+  public SQLConnection batch(final List<String> sqlStatements, final Handler<AsyncResult<List<Integer>>> handler) {
+    final SqlClient client = client();
+    final Integer[] counts = new Integer[sqlStatements.size()];
+    final int[] remaining = {sqlStatements.size()};
+    if (sqlStatements.isEmpty()) {
+      respond(handler, Future.succeededFuture(new ArrayList<>()));
+      return this;
+    }
+    for (int i = 0; i < counts.length; i += 1) {
+      final int index = i;
+      client.query(sqlStatements.get(i), resultF -> {
+        if (remaining[0] < 0) {
+          return;
+        }
+        if (resultF.failed()) {
+          remaining[0] = -1;
+          respond(handler, Future.failedFuture(resultF.cause()));
+          return;
+        }
+        counts[index] = resultF.result().rowCount();
+        remaining[0] -= 1;
+        if (remaining[0] == 0) {
+          final List<Integer> result = new ArrayList<>(counts.length);
+          for (final Integer count : counts) {
+            result.add(count);
+          }
+          respond(handler, Future.succeededFuture(result));
+        }
+      });
+    }
+    return this;
+  }
+
+  @Override
+  public SQLConnection batchWithParams(
+    final String sqlStatement,
+    final List<JsonArray> args,
+    final Handler<AsyncResult<List<Integer>>> handler
+  ) {
+    final List<Tuple> batch = new ArrayList<>(args.size());
+    for (final JsonArray arg : args) {
+      batch.add(toTuple(arg));
+    }
+    client().preparedBatch(rewrite(sqlStatement), batch, resultF -> respond(handler, resultF.map(rowSet -> {
+      final List<Integer> counts = new ArrayList<>(args.size());
+      for (RowSet<Row> current = rowSet; current != null; current = current.next()) {
+        counts.add(current.rowCount());
+      }
+      return counts;
+    })));
+    return this;
+  }
+
+  @Override
+  public SQLConnection commit(final Handler<AsyncResult<Void>> handler) {
+    endTransaction(true, handler);
+    return this;
+  }
+
+  @Override
+  public SQLConnection rollback(final Handler<AsyncResult<Void>> handler) {
+    endTransaction(false, handler);
+    return this;
+  }
+
+  private void endTransaction(final boolean commit, final Handler<AsyncResult<Void>> handler) {
+    final Transaction current = transaction;
+    transaction = null;
+    if (current == null) {
+      respond(handler, Future.succeededFuture());
+    } else if (commit) {
+      current.commit(result -> respond(handler, result));
+    } else {
+      current.rollback(result -> respond(handler, result));
+    }
+  }
+
+  @Override
+  public void close(final Handler<AsyncResult<Void>> handler) {
+    final SqlConnection current = exclusive;
+    exclusive = null;
+    if (current == null) {
+      respond(handler, Future.succeededFuture());
+      return;
+    }
+    endTransaction(false, ignored -> {
+      current.close();
+      respond(handler, Future.succeededFuture());
+    });
+  }
+
+  @Override
+  public void close() {
+    close(ignored -> {
+    });
+  }
+
+  @Override
+  public SQLConnection setQueryTimeout(final int timeoutInSeconds) {
+    return this;
+  }
+
+  @Override
+  public SQLConnection queryStream(final String sql, final Handler<AsyncResult<SQLRowStream>> handler) {
+    respond(handler, unsupported("queryStream"));
+    return this;
+  }
+
+  @Override
+  public SQLConnection queryStreamWithParams(
+    final String sql,
+    final JsonArray params,
+    final Handler<AsyncResult<SQLRowStream>> handler
+  ) {
+    respond(handler, unsupported("queryStreamWithParams"));
+    return this;
+  }
+
+  @Override
+  public SQLConnection call(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+    respond(resultHandler, unsupported("call"));
+    return this;
+  }
+
+  @Override
+  public SQLConnection callWithParams(
+    final String sql,
+    final JsonArray params,
+    final JsonArray outputs,
+    final Handler<AsyncResult<ResultSet>> resultHandler
+  ) {
+    respond(resultHandler, unsupported("callWithParams"));
+    return this;
+  }
+
+  @Override
+  public SQLConnection batchCallableWithParams(
+    final String sqlStatement,
+    final List<JsonArray> inArgs,
+    final List<JsonArray> outArgs,
+    final Handler<AsyncResult<List<Integer>>> handler
+  ) {
+    respond(handler, unsupported("batchCallableWithParams"));
+    return this;
+  }
+
+  @Override
+  public SQLConnection setTransactionIsolation(
+    final TransactionIsolation isolation,
+    final Handler<AsyncResult<Void>> handler
+  ) {
+    respond(handler, unsupported("setTransactionIsolation"));
+    return this;
+  }
+
+  @Override
+  public SQLConnection getTransactionIsolation(final Handler<AsyncResult<TransactionIsolation>> handler) {
+    respond(handler, unsupported("getTransactionIsolation"));
+    return this;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <N> N unwrap() {
+    return (N) client();
+  }
+
+  private <T> void respond(@Nonnull final Handler<AsyncResult<T>> handler, @Nonnull final AsyncResult<T> result) {
+    respond(context, handler, result);
+  }
+
+  /**
+   * Hands the result to the handler on the given context, right away if that is the current one (or none).
+   */
+  static <T> void respond(
+    @Nullable final Context context,
+    @Nonnull final Handler<AsyncResult<T>> handler,
+    @Nonnull final AsyncResult<T> result
+  ) {
+    if (context == null || context == Vertx.currentContext()) {
+      handler.handle(result);
+    } else {
+      context.runOnContext(ignored -> handler.handle(result));
+    }
+  }
+
+  private static <T> AsyncResult<T> unsupported(final String operation) {
+    return Future.failedFuture(new UnsupportedOperationException(operation + " is not supported by the pipelined client"));
+  }
+
+  private static Tuple toTuple(@Nonnull final JsonArray params) {
+    final Tuple tuple = Tuple.tuple();
+    for (int i = 0; i < params.size(); i += 1) {
+      tuple.addValue(params.getValue(i));
+    }
+    return tuple;
+  }
+
+  private static ResultSet toResultSet(@Nonnull final RowSet<Row> rowSet) {
+    final List<JsonArray> results = new ArrayList<>(rowSet.size());
+    for (final Row row : rowSet) {
+      final JsonArray values = new JsonArray(new ArrayList<>(row.size()));
+      for (int i = 0; i < row.size(); i += 1) {
+        values.add(toJsonValue(row.getValue(i)));
+      }
+      results.add(values);
+    }
+    return new ResultSet(rowSet.columnsNames(), results, null);
+  }
+
+  private static UpdateResult toUpdateResult(@Nonnull final RowSet<Row> rowSet) {
+    final JsonArray keys = new JsonArray();
+    for (final Row row : rowSet) {
+      if (row.size() > 0) {
+        keys.add(toJsonValue(row.getValue(0)));
+      }
+    }
+    return new UpdateResult(rowSet.rowCount(), keys);
+  }
+
+  /**
+   * Converts column values to the representation used by the asynchronous client: numbers, strings, booleans
+   * and json as they are, binary data as byte arrays and everything else (decimals, dates, uuids, ...) as strings.
+   */
+  @Nullable
+  private static Object toJsonValue(@Nullable final Object value) {
+    if (value == null
+      || value instanceof String
+      || value instanceof Boolean
+      || value instanceof Integer
+      || value instanceof Long
+      || value instanceof Short
+      || value instanceof Double
+      || value instanceof Float
+      || value instanceof JsonObject
+      || value instanceof JsonArray) {
+      return value;
+    }
+    if (value instanceof Buffer) {
+      return ((Buffer) value).getBytes();
+    }
+    return value.toString();
+  }
+
+  /**
+   * Rewrites the ? placeholders of the asynchronous client to $1, $2, ... skipping string literals (including
+   * escape strings and dollar quoted strings), quoted identifiers and comments.
+   */
+  static String rewrite(@Nonnull final String sql) {
+    final String cached = rewrittenStatements.get(sql);
+    if (cached != null) {
+      return cached;
+    }
+    final StringBuilder builder = new StringBuilder(sql.length() + 8);
+    int parameter = 0;
+    int i = 0;
+    while (i < sql.length()) {
+      final char c = sql.charAt(i);
+      final int next;
+      if (c == '\'' || c == '"') {
+        next = skipQuoted(sql, i, c == '\'' && isEscapeString(sql, i));
+      } else if (c == '-' && sql.startsWith("--", i)) {
+        final int end = sql.indexOf('\n', i);
+        next = end < 0 ? sql.length() : end;
+      } else if (c == '/' && sql.startsWith("/*", i)) {
+        next = skipComment(sql, i);
+      } else if (c == '$' && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))) {
+        next = skipDollarQuoted(sql, i);
+      } else if (c == '?') {
+        parameter += 1;
+        builder.append('$').append(parameter);
+        i += 1;
+        continue;
+      } else {
+        next = i + 1;
+      }
+      builder.append(sql, i, next);
+      i = next;
+    }
+    final String rewritten = builder.toString();
+    if (rewrittenStatements.size() < MAX_REWRITTEN_STATEMENTS) {
+      rewrittenStatements.putIfAbsent(sql, rewritten);
+    }
+    return rewritten;
+  }
+
+  private static boolean isEscapeString(final String sql, final int quote) {
+    return quote > 0
+      && (sql.charAt(quote - 1) == 'E' || sql.charAt(quote - 1) == 'e')
+      && (quote == 1 || !isIdentifierPart(sql.charAt(quote - 2)));
+  }
+
+  private static boolean isIdentifierPart(final char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+
+  /**
+   * Returns the index after the literal or quoted identifier starting at the given quote. A doubled quote
+   * continues the literal, so does a backslash escaped one in escape strings.
+   */
+  private static int skipQuoted(final String sql, final int start, final boolean backslashEscapes) {
+    final char quote = sql.charAt(start);
+    int i = start + 1;
+    while (i < sql.length()) {
+      final char c = sql.charAt(i);
+      if (backslashEscapes && c == '\\') {
+        i += 2;
+      } else if (c == quote && i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+        i += 2;
+      } else if (c == quote) {
+        return i + 1;
+      } else {
+        i += 1;
+      }
+    }
+    return sql.length();
+  }
+
+  /**
+   * Returns the index after the block comment starting at the given index, block comments nest in postgres.
+   */
+  private static int skipComment(final String sql, final int start) {
+    int depth = 0;
+    int i = start;
+    while (i < sql.length()) {
+      if (sql.startsWith("/*", i)) {
+        depth += 1;
+        i += 2;
+      } else if (sql.startsWith("*/", i)) {
+        depth -= 1;
+        i += 2;
+        if (depth == 0) {
+          return i;
+        }
+      } else {
+        i += 1;
+      }
+    }
+    return sql.length();
+  }
+
+  /**
+   * Returns the index after the dollar quoted string ($$...$$ or $tag$...$tag$) starting at the given index, or
+   * the index after the dollar sign if none starts there (for example a positional parameter like $1).
+   */
+  private static int skipDollarQuoted(final String sql, final int start) {
+    int i = start + 1;
+    if (i < sql.length() && Character.isDigit(sql.charAt(i))) {
+      return i;
+    }
+    while (i < sql.length() && sql.charAt(i) != '$') {
+      final char c = sql.charAt(i);
+      if (!(Character.isLetterOrDigit(c) || c == '_')) {
+        return start + 1;
+      }
+      i += 1;
+    }
+    if (i >= sql.length()) {
+      return start + 1;
+    }
+    final String tag = sql.substring(start, i + 1);
+    final int end = sql.indexOf(tag, i + 1);
+    return end < 0 ? sql.length() : end + tag.length();
+  }
+}
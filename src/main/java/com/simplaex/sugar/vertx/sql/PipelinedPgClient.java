@@ -0,0 +1,160 @@
+package com.simplaex.sugar.vertx.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.asyncsql.AsyncSQLClient;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgConnection;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.SqlConnection;
+import lombok.extern.log4j.Log4j2;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link AsyncSQLClient} backed by the reactive PostgreSQL client, selected using {@link DatabaseDriver#PIPELINED}.
+ * <p>
+ * Statements outside of transactions are sent over a few long lived connections which are shared by all callers,
+ * so that concurrent statements are pipelined instead of each occupying a connection of its own. Connections
+ * which switch off auto commit are taken from a separate pool exclusively until they are closed. Prepared
+ * statements are cached per connection. Results are handed back on the context the connection was requested
+ * from, not the one of the verticle which happened to establish the shared connection.
+ * <p>
+ * Statements may use ? placeholders as with the asynchronous client, they are rewritten to $1, $2, ... once.
+ * Unlike the asynchronous client the reactive client does not convert parameters, so values have to match
+ * the types of the columns they are compared with (or be cast in the statement).
+ */
+@Log4j2
+public class PipelinedPgClient implements AsyncSQLClient {
+
+  private final Vertx vertx;
+  private final PgConnectOptions connectOptions;
+  private final PgPool transactionPool;
+  private final List<SharedConnection> sharedConnections;
+  private final AtomicInteger next = new AtomicInteger();
+
+  public PipelinedPgClient(
+    @Nonnull final Vertx vertx,
+    @Nonnull final DatabaseConfig config,
+    @Nonnull final String host,
+    final int port
+  ) {
+    this.vertx = vertx;
+    this.connectOptions = new PgConnectOptions()
+      .setHost(host)
+      .setPort(port)
+      .setDatabase(config.getDatabaseDatabase())
+      .setUser(config.getDatabaseUsername())
+      .setPassword(config.getDatabasePassword())
+      .setCachePreparedStatements(true)
+      .setPipeliningLimit(config.getDatabasePipeliningLimit());
+    connectOptions.setConnectTimeout((int) config.getDatabaseConnectTimeoutMillis());
+    connectOptions.setReconnectAttempts(config.getDatabaseMaxConnectionRetries());
+    connectOptions.setReconnectInterval(config.getDatabaseConnectionRetryDelayMillis());
+    this.transactionPool = PgPool.pool(vertx, connectOptions, new PoolOptions()
+      .setMaxSize(config.getDatabaseMaxPoolSize())
+      .setMaxWaitQueueSize(config.getDatabaseMaxWaitQueueSize()));
+    final List<SharedConnection> sharedConnections = new ArrayList<>();
+    for (int i = 0; i < Math.max(1, config.getDatabasePipelinedConnections()); i += 1) {
+      sharedConnections.add(new SharedConnection());
+    }
+    this.sharedConnections = sharedConnections;
+  }
+
+  @Override
+  public SQLClient getConnection(@Nonnull final Handler<AsyncResult<SQLConnection>> handler) {
+    final SharedConnection shared = sharedConnections.get(Math.floorMod(next.getAndIncrement(), sharedConnections.size()));
+    final Context context = Vertx.currentContext();
+    shared.get(connF -> PgSQLConnection.respond(
+      context,
+      handler,
+      connF.<SQLConnection>map(connection -> new PgSQLConnection(connection, transactionPool, context))
+    ));
+    return this;
+  }
+
+  @Override
+  public void close(final Handler<AsyncResult<Void>> handler) {
+    close();
+    handler.handle(Future.succeededFuture());
+  }
+
+  @Override
+  public void close() {
+    sharedConnections.forEach(SharedConnection::close);
+    transactionPool.close();
+  }
+
+  /**
+   * A connection which is established on first use and again after it has been closed by the server.
+   */
+  private final class SharedConnection {
+
+    @Nullable
+    private SqlConnection connection;
+    @Nullable
+    private List<Handler<AsyncResult<SqlConnection>>> waiters;
+
+    private void get(@Nonnull final Handler<AsyncResult<SqlConnection>> handler) {
+      final SqlConnection current;
+      synchronized (this) {
+        current = connection;
+        if (current == null) {
+          if (waiters != null) {
+            waiters.add(handler);
+            return;
+          }
+          waiters = new ArrayList<>();
+          waiters.add(handler);
+        }
+      }
+      if (current != null) {
+        handler.handle(Future.succeededFuture(current));
+        return;
+      }
+      PgConnection.connect(vertx, connectOptions, connF -> {
+        final List<Handler<AsyncResult<SqlConnection>>> connected;
+        synchronized (this) {
+          connected = waiters;
+          waiters = null;
+          if (connF.succeeded()) {
+            final SqlConnection newConnection = connF.result();
+            connection = newConnection;
+            newConnection.closeHandler(ignored -> reset(newConnection));
+            newConnection.exceptionHandler(exc -> log.warn("Shared database connection failed", exc));
+          }
+        }
+        for (final Handler<AsyncResult<SqlConnection>> waiter : connected) {
+          waiter.handle(connF.map(c -> c));
+        }
+      });
+    }
+
+    private synchronized void reset(@Nonnull final SqlConnection closed) {
+      if (connection == closed) {
+        connection = null;
+      }
+    }
+
+    private void close() {
+      final SqlConnection current;
+      synchronized (this) {
+        current = connection;
+        connection = null;
+      }
+      if (current != null) {
+        current.close();
+      }
+    }
+  }
+}
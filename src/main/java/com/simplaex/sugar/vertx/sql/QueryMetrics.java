@@ -0,0 +1,123 @@
+package com.simplaex.sugar.vertx.sql;
+
+import com.simplaex.sugar.vertx.metrics.Histogram;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.UpdateResult;
+import lombok.extern.log4j.Log4j2;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool wait and execution times (in microseconds), rows and errors per query template, as recorded by
+ * {@link QueryUtil}. Also logs queries slower than {@link DatabaseConfig#getDatabaseSlowQueryThresholdMillis()}
+ * and a sample of all other queries (see {@link DatabaseConfig#getDatabaseQueryLogSampleRate()}).
+ * <p>
+ * Expose the metrics using for example
+ * {@code router.get("/metrics/queries").handler(new MetricsReporter(queryMetrics::toJson))}.
+ */
+@Log4j2
+@Singleton
+public class QueryMetrics {
+
+  /**
+   * Queries beyond {@link QueryUtil#MAX_COMPILED_QUERIES} different templates are recorded under this name.
+   */
+  public static final String OTHER = "other";
+
+  private final DatabaseConfig config;
+  private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+  @Inject
+  public QueryMetrics(@Nonnull final DatabaseConfig config) {
+    this.config = config;
+  }
+
+  @Nonnull
+  public Stats forQuery(@Nonnull final String query) {
+    final Stats existing = stats.get(query);
+    if (existing != null) {
+      return existing;
+    }
+    return stats.size() < QueryUtil.MAX_COMPILED_QUERIES
+      ? stats.computeIfAbsent(query, __ -> new Stats())
+      : stats.computeIfAbsent(OTHER, __ -> new Stats());
+  }
+
+  void recordSuccess(
+    @Nonnull final String query,
+    final long poolWaitNanos,
+    final long executionNanos,
+    @Nullable final Object result
+  ) {
+    final long rows = rows(result);
+    forQuery(query).record(poolWaitNanos, executionNanos, rows);
+    final long executionMillis = TimeUnit.NANOSECONDS.toMillis(executionNanos);
+    final long threshold = config.getDatabaseSlowQueryThresholdMillis();
+    if (threshold > 0 && executionMillis >= threshold) {
+      log.warn("Slow query took {}ms (waited {}ms for a connection), rows={} query={}",
+        executionMillis, TimeUnit.NANOSECONDS.toMillis(poolWaitNanos), rows, query);
+    } else if (ThreadLocalRandom.current().nextDouble() < config.getDatabaseQueryLogSampleRate()) {
+      log.info("Executed query in {}ms (waited {}ms for a connection), rows={} query={}",
+        executionMillis, TimeUnit.NANOSECONDS.toMillis(poolWaitNanos), rows, query);
+    }
+  }
+
+  void recordFailure(@Nonnull final String query) {
+    forQuery(query).errors.increment();
+  }
+
+  @Nonnull
+  public JsonObject toJson() {
+    final JsonObject json = new JsonObject();
+    stats.forEach((query, s) -> json.put(query, s.toJson()));
+    return json;
+  }
+
+  private static long rows(@Nullable final Object result) {
+    if (result instanceof ResultSet) {
+      return ((ResultSet) result).getNumRows();
+    } else if (result instanceof UpdateResult) {
+      return ((UpdateResult) result).getUpdated();
+    } else if (result instanceof List) {
+      long rows = 0;
+      for (final Object count : (List<?>) result) {
+        rows += count instanceof Number ? ((Number) count).longValue() : 0;
+      }
+      return rows;
+    }
+    return 0;
+  }
+
+  public static final class Stats {
+
+    private final Histogram poolWaitMicros = new Histogram();
+    private final Histogram executionMicros = new Histogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private void record(final long poolWaitNanos, final long executionNanos, final long rowCount) {
+      poolWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(poolWaitNanos));
+      executionMicros.record(TimeUnit.NANOSECONDS.toMicros(executionNanos));
+      rows.add(rowCount);
+    }
+
+    @Nonnull
+    public JsonObject toJson() {
+      return new JsonObject()
+        .put("poolWaitMicros", poolWaitMicros.toJson())
+        .put("executionMicros", executionMicros.toJson())
+        .put("rows", rows.sum())
+        .put("errors", errors.sum());
+    }
+  }
+}
@@ -0,0 +1,299 @@
+package com.simplaex.sugar.vertx.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.ResultSet;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the result sets of queries which opted in using {@link QueryUtil.Query#cached(long, String...)}.
+ * <p>
+ * Entries are keyed by the query text and the bound values, expire after the TTL given by the query, and are
+ * evicted least recently used first once the cached result sets hold more than
+ * {@link DatabaseConfig#getDatabaseResultCacheMaxRows()} rows in total. Every entry depends on the tables
+ * declared by its query; updates declaring one of these tables (see {@link QueryUtil.Query#invalidates(String...)})
+ * invalidate the entry. Concurrent misses for the same key are collapsed into a single database call.
+ * <p>
+ * Every caller gets a result set of its own (a copy of the cached one), so callers may modify it, and it is
+ * handed over on the vertx context the caller asked from.
+ */
+@Singleton
+public class QueryResultCache {
+
+  private final long maxRows;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Key, List<Waiter>> loading = new HashMap<>();
+  private final Map<String, AtomicLong> tableGenerations = new ConcurrentHashMap<>();
+  private long rows = 0;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+
+  @Inject
+  public QueryResultCache(@Nonnull final DatabaseConfig config) {
+    this(config.getDatabaseResultCacheMaxRows());
+  }
+
+  public QueryResultCache(@Nonnegative final long maxRows) {
+    this.maxRows = maxRows;
+  }
+
+  @EqualsAndHashCode
+  @RequiredArgsConstructor
+  private static final class Key {
+    private final String query;
+    private final JsonArray values;
+  }
+
+  @RequiredArgsConstructor
+  private static final class Entry {
+    private final ResultSet resultSet;
+    private final long weight;
+    private final long expiresAt;
+    private final String[] tables;
+    private final long[] generations;
+  }
+
+  @RequiredArgsConstructor
+  private static final class Waiter {
+    private final Handler<ResultSet> handler;
+    private final Handler<Throwable> onFailure;
+    @Nullable
+    private final Context context = Vertx.currentContext();
+
+    private void run(final Runnable runnable) {
+      if (context == null || context == Vertx.currentContext()) {
+        runnable.run();
+      } else {
+        context.runOnContext(ignored -> runnable.run());
+      }
+    }
+  }
+
+  /**
+   * Hands the cached result for the given query to the handler, or loads it using the loader if there is none.
+   * If the same query is already being loaded the handler waits for that load instead.
+   */
+  public void get(
+    @Nonnull final String query,
+    @Nonnull final JsonArray values,
+    @Nonnegative final long ttlMillis,
+    @Nonnull final String[] tables,
+    @Nonnull final Handler<Handler<AsyncResult<ResultSet>>> loader,
+    @Nonnull final Handler<ResultSet> handler,
+    @Nonnull final Handler<Throwable> onFailure
+  ) {
+    final Key key = new Key(query, values.copy());
+    final String[] normalizedTables = normalize(tables);
+    final ResultSet cached;
+    synchronized (this) {
+      cached = lookup(key);
+      if (cached == null) {
+        misses.increment();
+        final List<Waiter> waiters = loading.get(key);
+        if (waiters != null) {
+          waiters.add(new Waiter(handler, onFailure));
+          return;
+        }
+        final List<Waiter> newWaiters = new ArrayList<>();
+        newWaiters.add(new Waiter(handler, onFailure));
+        loading.put(key, newWaiters);
+      } else {
+        hits.increment();
+      }
+    }
+    if (cached != null) {
+      deliver(new Waiter(handler, onFailure), copy(cached));
+      return;
+    }
+    final long[] generations = generations(normalizedTables);
+    loads.increment();
+    final Handler<AsyncResult<ResultSet>> onLoaded = resultF -> {
+      final List<Waiter> waiters;
+      synchronized (this) {
+        waiters = loading.remove(key);
+        if (waiters == null) {
+          return;
+        }
+        if (resultF.succeeded() && ttlMillis > 0 && isCurrent(normalizedTables, generations)) {
+          store(key, new Entry(
+            copy(resultF.result()),
+            Math.max(1, resultF.result().getNumRows()),
+            System.currentTimeMillis() + ttlMillis,
+            normalizedTables,
+            generations
+          ));
+        }
+      }
+      if (resultF.failed()) {
+        for (final Waiter waiter : waiters) {
+          waiter.run(() -> waiter.onFailure.handle(resultF.cause()));
+        }
+        return;
+      }
+      // copy before handing anything out, the last waiter gets the loaded result itself
+      final List<ResultSet> results = new ArrayList<>(waiters.size());
+      for (int i = 1; i < waiters.size(); i += 1) {
+        results.add(copy(resultF.result()));
+      }
+      results.add(resultF.result());
+      for (int i = 0; i < waiters.size(); i += 1) {
+        deliver(waiters.get(i), results.get(i));
+      }
+    };
+    try {
+      loader.handle(onLoaded);
+    } catch (final Exception exc) {
+      onLoaded.handle(Future.failedFuture(exc));
+    }
+  }
+
+  /**
+   * Invalidates all cached results of queries which declared one of the given tables.
+   */
+  public void invalidate(@Nonnull final String... tables) {
+    for (final String table : normalize(tables)) {
+      tableGenerations.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet();
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    rows = 0;
+  }
+
+  @Nonnull
+  public synchronized JsonObject toJson() {
+    return new JsonObject()
+      .put("entries", entries.size())
+      .put("rows", rows)
+      .put("hits", hits.sum())
+      .put("misses", misses.sum())
+      .put("loads", loads.sum());
+  }
+
+  private ResultSet lookup(final Key key) {
+    final Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expiresAt <= System.currentTimeMillis() || !isCurrent(entry.tables, entry.generations)) {
+      remove(key);
+      return null;
+    }
+    return entry.resultSet;
+  }
+
+  private void store(final Key key, final Entry entry) {
+    remove(key);
+    entries.put(key, entry);
+    rows += entry.weight;
+    final Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+    while (rows > maxRows && eldest.hasNext()) {
+      rows -= eldest.next().getValue().weight;
+      eldest.remove();
+    }
+  }
+
+  private void remove(final Key key) {
+    final Entry removed = entries.remove(key);
+    if (removed != null) {
+      rows -= removed.weight;
+    }
+  }
+
+  private long[] generations(final String[] tables) {
+    final long[] generations = new long[tables.length];
+    for (int i = 0; i < tables.length; i += 1) {
+      generations[i] = tableGenerations.computeIfAbsent(tables[i], t -> new AtomicLong()).get();
+    }
+    return generations;
+  }
+
+  private boolean isCurrent(final String[] tables, final long[] expected) {
+    for (int i = 0; i < tables.length; i += 1) {
+      if (tableGenerations.get(tables[i]).get() != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String[] normalize(final String[] tables) {
+    final String[] normalized = new String[tables.length];
+    for (int i = 0; i < tables.length; i += 1) {
+      normalized[i] = tables[i].toLowerCase(Locale.ROOT);
+    }
+    return normalized;
+  }
+
+  private static void deliver(final Waiter waiter, final ResultSet resultSet) {
+    waiter.run(() -> {
+      try {
+        waiter.handler.handle(resultSet);
+      } catch (final Exception exc) {
+        waiter.onFailure.handle(exc);
+      }
+    });
+  }
+
+  /**
+   * Copies the result set deeply, other than {@link JsonArray#copy()} keeping binary values as byte arrays.
+   */
+  private static ResultSet copy(final ResultSet resultSet) {
+    final List<JsonArray> rows = new ArrayList<>(resultSet.getNumRows());
+    for (final JsonArray row : resultSet.getResults()) {
+      final List<Object> values = new ArrayList<>(row.size());
+      for (final Object value : row.getList()) {
+        values.add(copyValue(value));
+      }
+      rows.add(new JsonArray(values));
+    }
+    final List<String> columnNames = resultSet.getColumnNames() == null ? null : new ArrayList<>(resultSet.getColumnNames());
+    final ResultSet copy = new ResultSet(columnNames, rows, resultSet.getNext() == null ? null : copy(resultSet.getNext()));
+    if (resultSet.getOutput() != null) {
+      copy.setOutput(resultSet.getOutput().copy());
+    }
+    return copy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object copyValue(final Object value) {
+    if (value instanceof byte[]) {
+      return ((byte[]) value).clone();
+    } else if (value instanceof JsonObject) {
+      return ((JsonObject) value).copy();
+    } else if (value instanceof JsonArray) {
+      return ((JsonArray) value).copy();
+    } else if (value instanceof Map) {
+      return new JsonObject((Map<String, Object>) value).copy();
+    } else if (value instanceof List) {
+      return new JsonArray((List<Object>) value).copy();
+    }
+    return value;
+  }
+}
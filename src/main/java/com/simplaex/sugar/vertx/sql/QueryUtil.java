@@ -1,8 +1,13 @@
 package com.simplaex.sugar.vertx.sql;
 
 import com.simplaex.bedrock.Strings;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
 import io.vertx.ext.asyncsql.AsyncSQLClient;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLConnection;
@@ -12,17 +17,41 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+@Singleton
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
 @Log4j2
 public class QueryUtil {
 
+  public static final int MAX_COMPILED_QUERIES = 1024;
+
+  private static final String[] NO_TABLES = new String[0];
+
+  private final Vertx vertx;
   private final DatabaseConfig config;
   private final AsyncSQLClient sqlClient;
+  private final ReadReplicaRouter replicaRouter;
+  private final QueryResultCache resultCache;
+  private final QueryMetrics queryMetrics;
+
+  private final Map<String, CompiledQuery> compiledQueries = new ConcurrentHashMap<>();
+  private final Map<String, CompiledQuery> namedQueries = new ConcurrentHashMap<>();
+  private final Map<String, WriteCoalescer> coalescers = new ConcurrentHashMap<>();
 
   @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
   public class Query {
@@ -31,6 +60,13 @@ public class QueryUtil {
     private final String query;
     private final JsonArray values;
     private Handler<Throwable> onFailure = exc -> log.error("Error handling query={}", getQuery(), exc);
+    private boolean coalesce = true;
+    private boolean onPrimary = false;
+    private long cacheTtlMillis = 0;
+    private String[] cacheTables = NO_TABLES;
+    private String[] invalidatedTables = NO_TABLES;
+    @Nullable
+    private UnitOfWork unitOfWork = null;
 
     @Nonnull
     public Query onFailure(@Nonnull final Handler<Throwable> handler) {
@@ -38,100 +74,694 @@ public class QueryUtil {
       return this;
     }
 
+    /**
+     * Opts this query out of write coalescing (see {@link DatabaseConfig#getDatabaseWriteCoalescingWindowMillis()}),
+     * for example because it relies on the keys in the update result.
+     */
+    @Nonnull
+    public Query withoutCoalescing() {
+      coalesce = false;
+      return this;
+    }
+
+    /**
+     * Executes this query on the primary even if it is a read, for example to read your own writes.
+     */
+    @Nonnull
+    public Query onPrimary() {
+      onPrimary = true;
+      return this;
+    }
+
+    /**
+     * Caches the result of this query for the given time (see {@link QueryResultCache}). The cached result
+     * is invalidated early by updates which declare one of the given tables using {@link #invalidates(String...)}.
+     * Queries within a unit of work are never cached.
+     */
+    @Nonnull
+    public Query cached(@Nonnegative final long ttlMillis, @Nonnull final String... tables) {
+      cacheTtlMillis = ttlMillis;
+      cacheTables = tables;
+      return this;
+    }
+
+    /**
+     * Declares the tables this update writes to; cached query results depending on them are invalidated
+     * once the update succeeded (or, within a transaction, once it has been committed).
+     */
+    @Nonnull
+    public Query invalidates(@Nonnull final String... tables) {
+      invalidatedTables = tables;
+      return this;
+    }
+
+    /**
+     * Executes the query, on one of the read replicas if there are any (see {@link ReadReplicaRouter}).
+     */
     public void execute(@Nonnull final Handler<ResultSet> handler) {
-      sqlClient.getConnection(connF -> {
-        if (connF.failed()) {
-          log.error("Failed getting a connection for execution query={}", query, connF.cause());
-          onFailure.handle(connF.cause());
+      if (cacheTtlMillis > 0 && unitOfWork == null) {
+        resultCache.get(query, values, cacheTtlMillis, cacheTables, loaded -> {
+          final Query load = new Query(query, values).onFailure(exc -> loaded.handle(Future.failedFuture(exc)));
+          load.onPrimary = onPrimary;
+          load.execute(resultSet -> loaded.handle(Future.succeededFuture(resultSet)));
+        }, handler, onFailure);
+        return;
+      }
+      run(true, (connection, resultHandler) -> connection.queryWithParams(query, values, resultHandler), handler);
+    }
+
+    /**
+     * Executes the statement. If write coalescing is enabled concurrent calls with the same statement
+     * are executed together as one batch (see {@link #executeBatch(Handler, List)}); the update results then
+     * carry the update count only. If the batch fails, which writes none of the rows, the statements are executed
+     * one by one so that every call gets the outcome of its own update. With the {@link DatabaseDriver#ASYNC}
+     * driver coalesced statements are executed one by one right away, sharing a connection only. Either way the
+     * handlers are called on the context executeUpdate was called from.
+     */
+    public void executeUpdate(@Nonnull final Handler<UpdateResult> updateHandler) {
+      final Handler<UpdateResult> handler = invalidating(updateHandler);
+      if (coalesce && unitOfWork == null && config.getDatabaseWriteCoalescingWindowMillis() > 0) {
+        final WriteCoalescer coalescer = coalescers.size() < MAX_COMPILED_QUERIES
+          ? coalescers.computeIfAbsent(query, WriteCoalescer::new)
+          : coalescers.get(query);
+        if (coalescer != null) {
+          coalescer.add(new PendingUpdate(values, handler, onFailure, Vertx.currentContext()));
           return;
         }
-        final SQLConnection connection = connF.result();
-        connection.queryWithParams(query, values, resultF -> {
-          try {
-            if (resultF.failed()) {
-              log.error("Failed executing query={}", query, resultF.cause());
-              onFailure.handle(resultF.cause());
+      }
+      run(false, (connection, resultHandler) -> connection.updateWithParams(query, values, resultHandler), handler);
+    }
+
+    /**
+     * Executes the statement as a batch with the values from the given array, within a transaction so that
+     * either all or none of the rows are written. The {@link DatabaseDriver#ASYNC} driver does not support
+     * batches, with it the statement is executed once per values, one after the other within the transaction.
+     */
+    public void executeBatch(
+      @Nonnull final Handler<List<Integer>> handler,
+      @Nonnull final List<JsonArray> batchValues
+    ) {
+      run(false, (connection, resultHandler) -> inTransaction(connection, batch(batchValues), resultHandler), invalidating(handler));
+    }
+
+    private BiConsumer<SQLConnection, Handler<AsyncResult<List<Integer>>>> batch(@Nonnull final List<JsonArray> batchValues) {
+      if (config.getDatabaseDriver() != DatabaseDriver.ASYNC) {
+        return (connection, handler) -> connection.batchWithParams(query, batchValues, handler);
+      }
+      return (connection, handler) -> updateEach(connection, batchValues, new ArrayList<>(batchValues.size()), handler);
+    }
+
+    private void updateEach(
+      @Nonnull final SQLConnection connection,
+      @Nonnull final List<JsonArray> batchValues,
+      @Nonnull final List<Integer> counts,
+      @Nonnull final Handler<AsyncResult<List<Integer>>> handler
+    ) {
+      if (counts.size() == batchValues.size()) {
+        handler.handle(Future.succeededFuture(counts));
+        return;
+      }
+      connection.updateWithParams(query, batchValues.get(counts.size()), updateF -> {
+        if (updateF.failed()) {
+          handler.handle(Future.failedFuture(updateF.cause()));
+          return;
+        }
+        counts.add(updateF.result().getUpdated());
+        updateEach(connection, batchValues, counts, handler);
+      });
+    }
+
+    /**
+     * Executes the statement once per values, one after the other, continuing after failures; the results
+     * are those of the individual statements.
+     */
+    private void updateSeparately(
+      @Nonnull final SQLConnection connection,
+      @Nonnull final List<JsonArray> batchValues,
+      @Nonnull final List<AsyncResult<UpdateResult>> results,
+      @Nonnull final Handler<AsyncResult<List<AsyncResult<UpdateResult>>>> handler
+    ) {
+      if (results.size() == batchValues.size()) {
+        handler.handle(Future.succeededFuture(results));
+        return;
+      }
+      connection.updateWithParams(query, batchValues.get(results.size()), updateF -> {
+        if (updateF.failed()) {
+          log.error("Failed executing query={}", query, updateF.cause());
+          queryMetrics.recordFailure(query);
+        }
+        results.add(updateF);
+        updateSeparately(connection, batchValues, results, handler);
+      });
+    }
+
+    /**
+     * Runs the statement in a transaction which is committed if it succeeds and rolled back otherwise. Auto
+     * commit is switched back on only after a failure, as after a success the connection is returned to the pool.
+     */
+    private <R> void inTransaction(
+      @Nonnull final SQLConnection connection,
+      @Nonnull final BiConsumer<SQLConnection, Handler<AsyncResult<R>>> statement,
+      @Nonnull final Handler<AsyncResult<R>> handler
+    ) {
+      connection.setAutoCommit(false, autoCommitF -> {
+        if (autoCommitF.failed()) {
+          handler.handle(Future.failedFuture(autoCommitF.cause()));
+          return;
+        }
+        final Handler<AsyncResult<R>> resultHandler = resultF -> {
+          if (resultF.failed()) {
+            connection.rollback(rollbackF -> connection.setAutoCommit(true, ignored -> handler.handle(resultF)));
+            return;
+          }
+          connection.commit(commitF -> {
+            if (commitF.failed()) {
+              final AsyncResult<R> failed = Future.failedFuture(commitF.cause());
+              connection.rollback(rollbackF -> connection.setAutoCommit(true, ignored -> handler.handle(failed)));
               return;
             }
-            log.info("Successfully executed query={}", query);
-            handler.handle(resultF.result());
-          } catch (final Exception exc) {
-            if (onFailure != null) {
-              onFailure.handle(exc);
+            handler.handle(resultF);
+          });
+        };
+        try {
+          statement.accept(connection, resultHandler);
+        } catch (final RuntimeException exc) {
+          resultHandler.handle(Future.failedFuture(exc));
+        }
+      });
+    }
+
+    /**
+     * Executes coalesced updates, see {@link #executeUpdate(Handler)}.
+     */
+    private void executeCoalesced(@Nonnull final List<PendingUpdate> updates) {
+      final List<JsonArray> batchValues = new ArrayList<>(updates.size());
+      updates.forEach(update -> batchValues.add(update.values));
+      final boolean batching = config.getDatabaseDriver() != DatabaseDriver.ASYNC;
+      onFailure = exc -> updates.forEach(update -> update.complete(Future.failedFuture(exc)));
+      this.<List<AsyncResult<UpdateResult>>>run(false, (connection, resultHandler) -> {
+        if (!batching) {
+          updateSeparately(connection, batchValues, new ArrayList<>(updates.size()), resultHandler);
+          return;
+        }
+        inTransaction(connection, batch(batchValues), batchF -> {
+          if (batchF.succeeded()) {
+            final List<AsyncResult<UpdateResult>> results = new ArrayList<>(updates.size());
+            for (int i = 0; i < updates.size(); i += 1) {
+              final int count = i < batchF.result().size() ? batchF.result().get(i) : 0;
+              results.add(Future.succeededFuture(new UpdateResult(count, new JsonArray())));
             }
-          } finally {
-            connection.close();
+            resultHandler.handle(Future.succeededFuture(results));
+            return;
           }
+          log.warn("Failed executing {} coalesced updates as a batch, executing them one by one, query={}",
+            updates.size(), query, batchF.cause());
+          updateSeparately(connection, batchValues, new ArrayList<>(updates.size()), resultHandler);
         });
+      }, results -> {
+        for (int i = 0; i < updates.size(); i += 1) {
+          updates.get(i).complete(results.get(i));
+        }
       });
     }
 
-    public void executeUpdate(@Nonnull final Handler<UpdateResult> handler) {
-      sqlClient.getConnection(connF -> {
+    private <R> Handler<R> invalidating(@Nonnull final Handler<R> handler) {
+      if (invalidatedTables.length == 0) {
+        return handler;
+      }
+      if (unitOfWork != null) {
+        unitOfWork.invalidatedTables.addAll(Arrays.asList(invalidatedTables));
+      }
+      return result -> {
+        resultCache.invalidate(invalidatedTables);
+        handler.handle(result);
+      };
+    }
+
+    private <R> void run(
+      final boolean read,
+      @Nonnull final BiConsumer<SQLConnection, Handler<AsyncResult<R>>> statement,
+      @Nonnull final Handler<R> handler
+    ) {
+      if (unitOfWork != null) {
+        if (unitOfWork.isFinished()) {
+          onFailure.handle(new IllegalStateException("The unit of work for query=" + query + " is already finished"));
+          return;
+        }
+        runOn(unitOfWork.connection, 0, statement, handler, unitOfWork::abort, () -> { });
+        return;
+      }
+      final long requestedAt = System.nanoTime();
+      connector(read).accept(connF -> {
         if (connF.failed()) {
           log.error("Failed getting a connection for execution query={}", query, connF.cause());
+          queryMetrics.recordFailure(query);
           onFailure.handle(connF.cause());
           return;
         }
         final SQLConnection connection = connF.result();
-        connection.updateWithParams(query, values, resultF -> {
-          try {
-            if (resultF.failed()) {
-              log.error("Failed executing query={}", query, resultF.cause());
-              onFailure.handle(resultF.cause());
-              return;
-            }
-            log.info("Successfully executed query={}", query);
-            handler.handle(resultF.result());
-          } catch (final Exception exc) {
-            if (onFailure != null) {
-              onFailure.handle(exc);
-            }
-          } finally {
-            connection.close();
+        runOn(connection, System.nanoTime() - requestedAt, statement, handler, exc -> { }, connection::close);
+      });
+    }
+
+    private <R> void runOn(
+      @Nonnull final SQLConnection connection,
+      final long poolWaitNanos,
+      @Nonnull final BiConsumer<SQLConnection, Handler<AsyncResult<R>>> statement,
+      @Nonnull final Handler<R> handler,
+      @Nonnull final Handler<Throwable> abort,
+      @Nonnull final Runnable release
+    ) {
+      final long startedAt = System.nanoTime();
+      final AtomicBoolean completed = new AtomicBoolean(false);
+      try {
+        statement.accept(connection, resultF -> {
+          if (completed.compareAndSet(false, true)) {
+            complete(resultF, poolWaitNanos, startedAt, handler, abort, release);
           }
         });
-      });
+      } catch (final RuntimeException exc) {
+        // the statement failed before it was sent, e.g. because the driver does not support it
+        if (completed.compareAndSet(false, true)) {
+          complete(Future.failedFuture(exc), poolWaitNanos, startedAt, handler, abort, release);
+        }
+      }
+    }
+
+    private <R> void complete(
+      @Nonnull final AsyncResult<R> resultF,
+      final long poolWaitNanos,
+      final long startedAt,
+      @Nonnull final Handler<R> handler,
+      @Nonnull final Handler<Throwable> abort,
+      @Nonnull final Runnable release
+    ) {
+      try {
+        if (resultF.failed()) {
+          log.error("Failed executing query={}", query, resultF.cause());
+          queryMetrics.recordFailure(query);
+          onFailure.handle(resultF.cause());
+          abort.handle(resultF.cause());
+          return;
+        }
+        queryMetrics.recordSuccess(query, poolWaitNanos, System.nanoTime() - startedAt, resultF.result());
+        handler.handle(resultF.result());
+      } catch (final Exception exc) {
+        if (onFailure != null) {
+          onFailure.handle(exc);
+        }
+        abort.handle(exc);
+      } finally {
+        release.run();
+      }
+    }
+
+    private Consumer<Handler<AsyncResult<SQLConnection>>> connector(final boolean read) {
+      return read && !onPrimary ? replicaRouter::getReadConnection : sqlClient::getConnection;
     }
 
     /**
-     * Executes the statement as a batch with the values from the given array.
+     * Streams the rows of the query using a server side cursor, fetching fetchSize rows at a time
+     * (see {@link CursorReadStream}). The query is executed once a handler is set on the stream.
      */
-    public void executeBatch(
-      @Nonnull final Handler<List<Integer>> handler,
-      @Nonnull final List<JsonArray> batchValues
+    @Nonnull
+    public CursorReadStream<JsonArray> stream(@Nonnegative final int fetchSize) {
+      return stream(fetchSize, Function.identity());
+    }
+
+    /**
+     * Streams the rows of the query mapped by the given function, for example to buffers which can be pumped
+     * into an HttpServerResponse.
+     */
+    @Nonnull
+    public <T> CursorReadStream<T> stream(@Nonnegative final int fetchSize, @Nonnull final Function<JsonArray, T> mapper) {
+      if (unitOfWork != null) {
+        throw new IllegalStateException("Streaming is not supported within a unit of work, query=" + query);
+      }
+      return new CursorReadStream<>(connector(true), query, values, fetchSize, columns -> mapper, onFailure);
+    }
+
+    /**
+     * Executes the query and maps the rows to instances of the given class (see {@link RowMapper}).
+     */
+    public <T> void executeAs(@Nonnull final Class<T> clazz, @Nonnull final Handler<List<T>> handler) {
+      final RowMapper<T> mapper = RowMapper.forClass(clazz);
+      execute(resultSet -> handler.handle(mapper.mapAll(resultSet)));
+    }
+
+    /**
+     * Streams the rows of the query mapped to instances of the given class (see {@link RowMapper}).
+     */
+    @Nonnull
+    public <T> CursorReadStream<T> streamAs(@Nonnegative final int fetchSize, @Nonnull final Class<T> clazz) {
+      if (unitOfWork != null) {
+        throw new IllegalStateException("Streaming is not supported within a unit of work, query=" + query);
+      }
+      return new CursorReadStream<>(connector(true), query, values, fetchSize, RowMapper.forClass(clazz)::forColumns, onFailure);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static final class PendingUpdate {
+    private final JsonArray values;
+    private final Handler<UpdateResult> handler;
+    private final Handler<Throwable> onFailure;
+    @Nullable
+    private final Context context;
+
+    /**
+     * Hands the outcome of this update to its handlers on the context it was requested from.
+     */
+    private void complete(@Nonnull final AsyncResult<UpdateResult> result) {
+      if (context == null || context == Vertx.currentContext()) {
+        handle(result);
+      } else {
+        context.runOnContext(ignored -> handle(result));
+      }
+    }
+
+    private void handle(@Nonnull final AsyncResult<UpdateResult> result) {
+      if (result.failed()) {
+        onFailure.handle(result.cause());
+        return;
+      }
+      try {
+        handler.handle(result.result());
+      } catch (final Exception exc) {
+        onFailure.handle(exc);
+      }
+    }
+  }
+
+  /**
+   * Collects executeUpdate calls for one statement and executes them as a single batch once
+   * the coalescing window has passed or the maximum batch size is reached.
+   */
+  private final class WriteCoalescer {
+
+    private final String query;
+    private List<PendingUpdate> pending = new ArrayList<>();
+    private long timerId = -1;
+
+    private WriteCoalescer(final String query) {
+      this.query = query;
+    }
+
+    private void add(final PendingUpdate update) {
+      final List<PendingUpdate> updates;
+      synchronized (this) {
+        pending.add(update);
+        if (pending.size() < config.getDatabaseWriteCoalescingMaxBatchSize()) {
+          if (timerId == -1) {
+            timerId = vertx.setTimer(config.getDatabaseWriteCoalescingWindowMillis(), this::flushOnTimer);
+          }
+          return;
+        }
+        vertx.cancelTimer(timerId);
+        updates = drain();
+      }
+      execute(updates);
+    }
+
+    private void flushOnTimer(final long id) {
+      final List<PendingUpdate> updates;
+      synchronized (this) {
+        if (timerId != id) {
+          return;
+        }
+        updates = drain();
+      }
+      execute(updates);
+    }
+
+    private List<PendingUpdate> drain() {
+      final List<PendingUpdate> updates = pending;
+      pending = new ArrayList<>();
+      timerId = -1;
+      return updates;
+    }
+
+    private void execute(final List<PendingUpdate> updates) {
+      if (updates.size() == 1) {
+        final PendingUpdate update = updates.get(0);
+        new Query(query, update.values)
+          .withoutCoalescing()
+          .onFailure(exc -> update.complete(Future.failedFuture(exc)))
+          .executeUpdate(result -> update.complete(Future.succeededFuture(result)));
+      } else if (!updates.isEmpty()) {
+        new Query(query, new JsonArray()).executeCoalesced(updates);
+      }
+    }
+  }
+
+  /**
+   * A chain of queries which all run on the same connection, optionally within a transaction
+   * (see {@link #transaction(Handler, Handler)} and {@link #pinned(Handler, Handler)}).
+   * <p>
+   * Queries created from a unit of work have to be executed one after the other, i.e. the next query
+   * is executed from the result handler of the previous one. The unit of work must be finished using
+   * {@link #commit(Handler)} or {@link #rollback()}, which returns the connection to the pool. If any
+   * of the queries fails or any of the handlers throws, the transaction is rolled back, the connection
+   * is returned and the failure handler of the unit of work is invoked (after the one of the query).
+   */
+  public final class UnitOfWork {
+
+    private final SQLConnection connection;
+    private final boolean transactional;
+    private final Handler<Throwable> onFailure;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private final Set<String> invalidatedTables = ConcurrentHashMap.newKeySet();
+
+    private UnitOfWork(
+      @Nonnull final SQLConnection connection,
+      final boolean transactional,
+      @Nonnull final Handler<Throwable> onFailure
     ) {
-      sqlClient.getConnection(connF -> {
-        if (connF.failed()) {
-          log.error("Failed getting a connection for execution query={}", query, connF.cause());
-          onFailure.handle(connF.cause());
+      this.connection = connection;
+      this.transactional = transactional;
+      this.onFailure = onFailure;
+    }
+
+    @Nonnull
+    public Query query(@Nonnull final String query, final Object... values) {
+      return bind(compile(query), values);
+    }
+
+    @Nonnull
+    public Query bind(@Nonnull final CompiledQuery compiledQuery, final Object... values) {
+      final Query query = compiledQuery.bind(values);
+      query.unitOfWork = this;
+      return query;
+    }
+
+    public boolean isFinished() {
+      return finished.get();
+    }
+
+    /**
+     * Commits the transaction (if any) and returns the connection to the pool.
+     */
+    public void commit(@Nonnull final Handler<Void> handler) {
+      if (!finished.compareAndSet(false, true)) {
+        onFailure.handle(new IllegalStateException("The unit of work is already finished"));
+        return;
+      }
+      if (!transactional) {
+        connection.close();
+        complete(handler);
+        return;
+      }
+      connection.commit(commitF -> {
+        if (commitF.failed()) {
+          log.error("Failed committing transaction", commitF.cause());
+          connection.rollback(rollbackF -> connection.close());
+          onFailure.handle(commitF.cause());
           return;
         }
-        final SQLConnection connection = connF.result();
-        connection.batchWithParams(query, batchValues, resultF -> {
-          try {
-            if (resultF.failed()) {
-              log.error("Failed executing query={}", query, resultF.cause());
-              onFailure.handle(resultF.cause());
-              return;
-            }
-            log.info("Successfully executed query={}", query);
-            handler.handle(resultF.result());
-          } catch (final Exception exc) {
-            if (onFailure != null) {
-              onFailure.handle(exc);
-            }
-          } finally {
-            connection.close();
-          }
-        });
+        connection.close();
+        resultCache.invalidate(invalidatedTables.toArray(NO_TABLES));
+        complete(handler);
+      });
+    }
+
+    /**
+     * Rolls back the transaction (if any) and returns the connection to the pool. Does nothing if the
+     * unit of work is already finished.
+     */
+    public void rollback() {
+      if (!finished.compareAndSet(false, true)) {
+        return;
+      }
+      if (!transactional) {
+        connection.close();
+        return;
+      }
+      connection.rollback(rollbackF -> {
+        if (rollbackF.failed()) {
+          log.warn("Failed rolling back transaction", rollbackF.cause());
+        }
+        connection.close();
       });
     }
+
+    private void complete(@Nonnull final Handler<Void> handler) {
+      try {
+        handler.handle(null);
+      } catch (final Exception exc) {
+        onFailure.handle(exc);
+      }
+    }
+
+    private void start(@Nonnull final Handler<UnitOfWork> work) {
+      try {
+        work.handle(this);
+      } catch (final Exception exc) {
+        abort(exc);
+      }
+    }
+
+    private void abort(@Nonnull final Throwable cause) {
+      if (isFinished()) {
+        return;
+      }
+      rollback();
+      onFailure.handle(cause);
+    }
+  }
+
+  /**
+   * Runs the given work within a transaction on a single connection. The work has to end the transaction
+   * using {@link UnitOfWork#commit(Handler)} or {@link UnitOfWork#rollback()}.
+   */
+  public void transaction(@Nonnull final Handler<UnitOfWork> work, @Nonnull final Handler<Throwable> onFailure) {
+    begin(true, work, onFailure);
+  }
+
+  /**
+   * Runs the given work on a single connection without a transaction, saving a pool checkout per query.
+   * The work has to return the connection using {@link UnitOfWork#commit(Handler)} or {@link UnitOfWork#rollback()}.
+   */
+  public void pinned(@Nonnull final Handler<UnitOfWork> work, @Nonnull final Handler<Throwable> onFailure) {
+    begin(false, work, onFailure);
+  }
+
+  private void begin(
+    final boolean transactional,
+    @Nonnull final Handler<UnitOfWork> work,
+    @Nonnull final Handler<Throwable> onFailure
+  ) {
+    sqlClient.getConnection(connF -> {
+      if (connF.failed()) {
+        log.error("Failed getting a connection for unit of work", connF.cause());
+        onFailure.handle(connF.cause());
+        return;
+      }
+      final SQLConnection connection = connF.result();
+      final UnitOfWork unitOfWork = new UnitOfWork(connection, transactional, onFailure);
+      if (!transactional) {
+        unitOfWork.start(work);
+        return;
+      }
+      connection.setAutoCommit(false, autoCommitF -> {
+        if (autoCommitF.failed()) {
+          log.error("Failed starting transaction", autoCommitF.cause());
+          connection.close();
+          onFailure.handle(autoCommitF.cause());
+          return;
+        }
+        unitOfWork.start(work);
+      });
+    });
+  }
+
+  /**
+   * A query text with the template variables already substituted which can be bound to values many times.
+   */
+  @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+  public class CompiledQuery {
+
+    @Getter
+    private final String query;
+
+    @Nonnull
+    public Query bind(final Object... values) {
+      final JsonArray valuesArray = new JsonArray(new ArrayList<>(values.length));
+      for (final Object value : values) {
+        valuesArray.add(value);
+      }
+      return new Query(query, valuesArray);
+    }
+  }
+
+  /**
+   * Loads the rows from the given stream into the table using COPY (see {@link BulkCopy}). Table and column
+   * names may use the template variables of queries, e.g. {@code <<schema>>.events}. They are quoted as
+   * identifiers, so they are case sensitive, see {@link BulkCopy#statement(String, List)}.
+   */
+  @Nonnull
+  public BulkCopy copyIn(
+    @Nonnull final String table,
+    @Nonnull final List<String> columns,
+    @Nonnull final ReadStream<JsonArray> rows
+  ) {
+    final List<String> augmentedColumns = new ArrayList<>(columns.size());
+    for (final String column : columns) {
+      augmentedColumns.add(augment(column, null));
+    }
+    return new BulkCopy(vertx, config, BulkCopy.statement(augment(table, null), augmentedColumns), rows);
   }
 
   public Query query(final String query, final Object... values) {
+    return compile(query).bind(values);
+  }
+
+  /**
+   * Substitutes the template variables in the given query. The result is cached (up to
+   * {@link #MAX_COMPILED_QUERIES} different queries) so repeated calls with the same query are cheap.
+   */
+  @Nonnull
+  public CompiledQuery compile(@Nonnull final String query) {
+    final CompiledQuery cached = compiledQueries.get(query);
+    if (cached != null) {
+      return cached;
+    }
+    final CompiledQuery compiledQuery = new CompiledQuery(augment(query, null));
+    if (compiledQueries.size() < MAX_COMPILED_QUERIES) {
+      compiledQueries.putIfAbsent(query, compiledQuery);
+    }
+    return compiledQuery;
+  }
+
+  /**
+   * Registers a query under the given name, to be retrieved using {@link #named(String)}.
+   * This is meant to be used at startup as it fails if the query uses unknown template variables.
+   */
+  @Nonnull
+  public CompiledQuery register(@Nonnull final String name, @Nonnull final String query) {
+    final List<String> unknownVariables = new ArrayList<>();
+    final CompiledQuery compiledQuery = new CompiledQuery(augment(query, unknownVariables));
+    if (!unknownVariables.isEmpty()) {
+      throw new IllegalArgumentException("Unknown template variables " + unknownVariables + " in query " + name);
+    }
+    final CompiledQuery existing = namedQueries.putIfAbsent(name, compiledQuery);
+    if (existing != null && !existing.getQuery().equals(compiledQuery.getQuery())) {
+      throw new IllegalArgumentException("A different query is already registered as " + name);
+    }
+    return compiledQuery;
+  }
+
+  @Nonnull
+  public CompiledQuery named(@Nonnull final String name) {
+    final CompiledQuery compiledQuery = namedQueries.get(name);
+    if (compiledQuery == null) {
+      throw new IllegalArgumentException("No query registered as " + name);
+    }
+    return compiledQuery;
+  }
+
+  private String augment(final String query, @Nullable final List<String> unknownVariables) {
     final Strings.Template template = Strings.template("<<", ">>", query);
-    final String augmentedQuery = template.apply(variable -> {
+    return template.apply(variable -> {
       switch (variable) {
         case "schema":
           return config.getDatabaseSchema();
@@ -146,12 +776,12 @@ public class QueryUtil {
         case "port":
           return Integer.toString(config.getDatabasePort());
         default:
+          if (unknownVariables != null) {
+            unknownVariables.add(variable);
+          }
           return "<<" + variable + ">>";
       }
     });
-    final JsonArray valuesArray = new JsonArray();
-    Arrays.stream(values).forEach(valuesArray::add);
-    return new Query(augmentedQuery, valuesArray);
   }
 
 }
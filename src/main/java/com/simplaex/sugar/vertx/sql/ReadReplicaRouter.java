@@ -0,0 +1,116 @@
+package com.simplaex.sugar.vertx.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.asyncsql.AsyncSQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections for reads from the read replicas in {@link DatabaseConfig#getDatabaseReadReplicaHosts()}.
+ * <p>
+ * The replica with the fewest outstanding requests (waiting for or holding a connection) is chosen, ties are
+ * broken round robin. If getting a connection from the replica fails the read falls back to the primary, unless
+ * the replica's concurrency limiter rejected it (see {@link ConcurrencyLimitedSQLClient}): reads shed because the
+ * replica is overloaded fail rather than move the load to the primary. Without replicas all reads go to the primary.
+ */
+@Log4j2
+@Singleton
+public class ReadReplicaRouter {
+
+  @Getter
+  private final AsyncSQLClient primary;
+
+  private final List<Replica> replicas;
+  private final AtomicInteger next = new AtomicInteger();
+
+  @Inject
+  public ReadReplicaRouter(
+    @Nonnull final Vertx vertx,
+    @Nonnull final DatabaseConfig config,
+    @Nonnull final AsyncSQLClient primary
+  ) {
+    this.primary = primary;
+    final List<Replica> replicas = new ArrayList<>();
+    for (final String replicaHost : config.getDatabaseReadReplicaHosts()) {
+      final int colon = replicaHost.lastIndexOf(':');
+      final String host = colon < 0 ? replicaHost : replicaHost.substring(0, colon);
+      final int port = colon < 0 ? config.getDatabasePort() : Integer.parseInt(replicaHost.substring(colon + 1));
+      replicas.add(new Replica(host + ":" + port, AsyncSQLClientModule.createClient(vertx, config, host, port)));
+    }
+    this.replicas = Collections.unmodifiableList(replicas);
+  }
+
+  private static final class Replica {
+    private final String name;
+    private final AsyncSQLClient client;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private Replica(final String name, final AsyncSQLClient client) {
+      this.name = name;
+      this.client = client;
+    }
+  }
+
+  public boolean hasReplicas() {
+    return !replicas.isEmpty();
+  }
+
+  public void getReadConnection(@Nonnull final Handler<AsyncResult<SQLConnection>> handler) {
+    if (replicas.isEmpty()) {
+      primary.getConnection(handler);
+      return;
+    }
+    final Replica replica = leastOutstanding();
+    replica.outstanding.incrementAndGet();
+    replica.client.getConnection(connF -> {
+      if (connF.failed()) {
+        replica.outstanding.decrementAndGet();
+        if (connF.cause() instanceof RejectedExecutionException) {
+          handler.handle(connF);
+          return;
+        }
+        log.warn("Failed getting a connection from replica={}, falling back to the primary", replica.name, connF.cause());
+        primary.getConnection(handler);
+        return;
+      }
+      handler.handle(Future.succeededFuture(new ForwardingSQLConnection(connF.result()) {
+        private boolean closed = false;
+
+        @Override
+        public void close(final Handler<AsyncResult<Void>> closeHandler) {
+          if (!closed) {
+            closed = true;
+            replica.outstanding.decrementAndGet();
+          }
+          delegate.close(closeHandler);
+        }
+      }));
+    });
+  }
+
+  private Replica leastOutstanding() {
+    final int size = replicas.size();
+    final int start = Math.floorMod(next.getAndIncrement(), size);
+    Replica best = replicas.get(start);
+    for (int i = 1; i < size; i += 1) {
+      final Replica candidate = replicas.get((start + i) % size);
+      if (candidate.outstanding.get() < best.outstanding.get()) {
+        best = candidate;
+      }
+    }
+    return best;
+  }
+}
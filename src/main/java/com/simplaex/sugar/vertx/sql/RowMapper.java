@@ -0,0 +1,306 @@
+package com.simplaex.sugar.vertx.sql;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.ResultSet;
+import lombok.SneakyThrows;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.beans.ConstructorProperties;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Maps result rows to instances of a class, see {@link QueryUtil.Query#executeAs(Class, io.vertx.core.Handler)}.
+ * <p>
+ * Columns are matched to properties by name, ignoring case and underscores (so user_id matches userId). If the
+ * class has a no-args constructor and no final fields the matching fields are set directly; otherwise a
+ * constructor is used: the one annotated with {@link ConstructorProperties}, or the one whose parameter names
+ * are known (compiled with -parameters), or the one taking all fields in declaration order (as generated by
+ * lombok's @Value or @AllArgsConstructor). Constructors and field setters are resolved once per class as method
+ * handles, and the column index of every property is resolved once per distinct list of columns. Values are
+ * converted to the property types (numbers, strings, booleans, enums, UUIDs, dates, decimals, json, binary).
+ */
+public final class RowMapper<T> {
+
+  public static final int MAX_SHAPES = 64;
+
+  private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+  private static final ClassValue<RowMapper<?>> mappers = new ClassValue<RowMapper<?>>() {
+    @Override
+    protected RowMapper<?> computeValue(final Class<?> type) {
+      return new RowMapper<>(type);
+    }
+  };
+
+  private final Class<T> clazz;
+  private final Property[] properties;
+  private final MethodHandle constructor;
+  private final boolean viaConstructor;
+  private final Map<List<String>, Function<JsonArray, T>> shapes = new ConcurrentHashMap<>();
+
+  private static final class Property {
+    private final String key;
+    private final Class<?> type;
+    private final Function<Object, Object> converter;
+    @Nullable
+    private final MethodHandle setter;
+
+    private Property(final String name, final Class<?> type, @Nullable final MethodHandle setter) {
+      this.key = key(name);
+      this.type = type;
+      this.converter = converter(type);
+      this.setter = setter;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> RowMapper<T> forClass(@Nonnull final Class<T> clazz) {
+    return (RowMapper<T>) mappers.get(clazz);
+  }
+
+  private RowMapper(@Nonnull final Class<T> clazz) {
+    this.clazz = clazz;
+    final List<Field> fields = fields(clazz);
+    final boolean hasFinalFields = fields.stream().anyMatch(field -> Modifier.isFinal(field.getModifiers()));
+    final Constructor<?> noArgs = hasFinalFields ? null : noArgsConstructor(clazz);
+    try {
+      if (noArgs != null) {
+        noArgs.setAccessible(true);
+        this.constructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+        final List<Property> properties = new ArrayList<>();
+        for (final Field field : fields) {
+          field.setAccessible(true);
+          final MethodHandle setter = lookup.unreflectSetter(field)
+            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+          properties.add(new Property(field.getName(), field.getType(), setter));
+        }
+        this.properties = properties.toArray(new Property[0]);
+        this.viaConstructor = false;
+      } else {
+        final Constructor<?> ctor = propertiesConstructor(clazz, fields);
+        final List<String> names = parameterNames(ctor, fields);
+        ctor.setAccessible(true);
+        this.constructor = lookup.unreflectConstructor(ctor)
+          .asSpreader(Object[].class, ctor.getParameterCount())
+          .asType(MethodType.methodType(Object.class, Object[].class));
+        final Class<?>[] types = ctor.getParameterTypes();
+        this.properties = new Property[types.length];
+        for (int i = 0; i < types.length; i += 1) {
+          properties[i] = new Property(names.get(i), types[i], null);
+        }
+        this.viaConstructor = true;
+      }
+    } catch (final IllegalAccessException | RuntimeException exc) {
+      throw new IllegalArgumentException("Can not map rows to " + clazz.getName(), exc);
+    }
+  }
+
+  /**
+   * Returns a function mapping rows with the given columns; the property for each column is looked up once.
+   */
+  @Nonnull
+  public Function<JsonArray, T> forColumns(@Nonnull final List<String> columns) {
+    final Function<JsonArray, T> cached = shapes.get(columns);
+    if (cached != null) {
+      return cached;
+    }
+    final int[] indexes = new int[properties.length];
+    for (int i = 0; i < properties.length; i += 1) {
+      indexes[i] = -1;
+      for (int column = 0; column < columns.size(); column += 1) {
+        if (properties[i].key.equals(key(columns.get(column)))) {
+          indexes[i] = column;
+          break;
+        }
+      }
+    }
+    final Function<JsonArray, T> mapper = viaConstructor ? row -> construct(row, indexes) : row -> populate(row, indexes);
+    if (shapes.size() < MAX_SHAPES) {
+      shapes.putIfAbsent(new ArrayList<>(columns), mapper);
+    }
+    return mapper;
+  }
+
+  @Nonnull
+  public List<T> mapAll(@Nonnull final ResultSet resultSet) {
+    final List<JsonArray> rows = resultSet.getResults();
+    if (rows == null || rows.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final Function<JsonArray, T> mapper = forColumns(resultSet.getColumnNames());
+    final List<T> result = new ArrayList<>(rows.size());
+    for (final JsonArray row : rows) {
+      result.add(mapper.apply(row));
+    }
+    return result;
+  }
+
+  @SneakyThrows
+  private T populate(final JsonArray row, final int[] indexes) {
+    final Object object = (Object) constructor.invokeExact();
+    for (int i = 0; i < properties.length; i += 1) {
+      final Object value = indexes[i] < 0 ? null : row.getValue(indexes[i]);
+      if (value != null) {
+        properties[i].setter.invokeExact(object, properties[i].converter.apply(value));
+      }
+    }
+    return clazz.cast(object);
+  }
+
+  @SneakyThrows
+  private T construct(final JsonArray row, final int[] indexes) {
+    final Object[] args = new Object[properties.length];
+    for (int i = 0; i < properties.length; i += 1) {
+      final Object value = indexes[i] < 0 ? null : row.getValue(indexes[i]);
+      final Class<?> type = properties[i].type;
+      args[i] = value != null
+        ? properties[i].converter.apply(value)
+        : type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+    }
+    return clazz.cast((Object) constructor.invokeExact(args));
+  }
+
+  private static String key(final String name) {
+    return name.replace("_", "").toLowerCase(Locale.ROOT);
+  }
+
+  private static List<Field> fields(final Class<?> clazz) {
+    final List<Field> fields = new ArrayList<>();
+    for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+      final List<Field> declared = new ArrayList<>();
+      for (final Field field : c.getDeclaredFields()) {
+        final int modifiers = field.getModifiers();
+        if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+          declared.add(field);
+        }
+      }
+      fields.addAll(0, declared);
+    }
+    return fields;
+  }
+
+  @Nullable
+  private static Constructor<?> noArgsConstructor(final Class<?> clazz) {
+    try {
+      return clazz.getDeclaredConstructor();
+    } catch (final NoSuchMethodException exc) {
+      return null;
+    }
+  }
+
+  private static Constructor<?> propertiesConstructor(final Class<?> clazz, final List<Field> fields) {
+    Constructor<?> named = null;
+    Constructor<?> allFields = null;
+    for (final Constructor<?> ctor : clazz.getDeclaredConstructors()) {
+      if (ctor.isAnnotationPresent(ConstructorProperties.class)) {
+        return ctor;
+      }
+      final Parameter[] parameters = ctor.getParameters();
+      if (parameters.length > 0 && parameters[0].isNamePresent()
+        && (named == null || named.getParameterCount() < parameters.length)) {
+        named = ctor;
+      }
+      if (parameters.length == fields.size() && allFields == null) {
+        boolean matches = true;
+        for (int i = 0; i < parameters.length; i += 1) {
+          matches &= parameters[i].getType() == fields.get(i).getType();
+        }
+        if (matches) {
+          allFields = ctor;
+        }
+      }
+    }
+    if (named != null) {
+      return named;
+    }
+    if (allFields != null) {
+      return allFields;
+    }
+    throw new IllegalArgumentException(clazz.getName() + " has neither a no-args constructor nor a constructor for all its fields");
+  }
+
+  private static List<String> parameterNames(final Constructor<?> ctor, final List<Field> fields) {
+    final List<String> names = new ArrayList<>();
+    final ConstructorProperties properties = ctor.getAnnotation(ConstructorProperties.class);
+    if (properties != null) {
+      Collections.addAll(names, properties.value());
+      return names;
+    }
+    for (final Parameter parameter : ctor.getParameters()) {
+      names.add(parameter.isNamePresent() ? parameter.getName() : fields.get(names.size()).getName());
+    }
+    return names;
+  }
+
+  private static Function<Object, Object> converter(final Class<?> type) {
+    if (type == String.class) {
+      return Object::toString;
+    } else if (type == int.class || type == Integer.class) {
+      return value -> value instanceof Number ? ((Number) value).intValue() : Integer.valueOf(value.toString());
+    } else if (type == long.class || type == Long.class) {
+      return value -> value instanceof Number ? ((Number) value).longValue() : Long.valueOf(value.toString());
+    } else if (type == double.class || type == Double.class) {
+      return value -> value instanceof Number ? ((Number) value).doubleValue() : Double.valueOf(value.toString());
+    } else if (type == float.class || type == Float.class) {
+      return value -> value instanceof Number ? ((Number) value).floatValue() : Float.valueOf(value.toString());
+    } else if (type == short.class || type == Short.class) {
+      return value -> value instanceof Number ? ((Number) value).shortValue() : Short.valueOf(value.toString());
+    } else if (type == byte.class || type == Byte.class) {
+      return value -> value instanceof Number ? ((Number) value).byteValue() : Byte.valueOf(value.toString());
+    } else if (type == boolean.class || type == Boolean.class) {
+      return value -> value instanceof Boolean ? value : "t".equals(value) || "true".equals(value);
+    } else if (type == BigDecimal.class) {
+      return value -> new BigDecimal(value.toString());
+    } else if (type == BigInteger.class) {
+      return value -> new BigInteger(value.toString());
+    } else if (type.isEnum()) {
+      return value -> enumValue(type, value.toString());
+    } else if (type == UUID.class) {
+      return value -> UUID.fromString(value.toString());
+    } else if (type == Instant.class) {
+      return value -> value instanceof Instant ? value : OffsetDateTime.parse(value.toString()).toInstant();
+    } else if (type == OffsetDateTime.class) {
+      return value -> OffsetDateTime.parse(value.toString());
+    } else if (type == LocalDateTime.class) {
+      return value -> LocalDateTime.parse(value.toString());
+    } else if (type == LocalDate.class) {
+      return value -> LocalDate.parse(value.toString());
+    } else if (type == JsonObject.class) {
+      return value -> value instanceof JsonObject ? value : new JsonObject(value.toString());
+    } else if (type == JsonArray.class) {
+      return value -> value instanceof JsonArray ? value : new JsonArray(value.toString());
+    } else if (type == byte[].class) {
+      return value -> value instanceof byte[] ? value : Base64.getDecoder().decode(value.toString());
+    }
+    return type::cast;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object enumValue(final Class<?> type, final String name) {
+    return Enum.valueOf((Class) type, name);
+  }
+}
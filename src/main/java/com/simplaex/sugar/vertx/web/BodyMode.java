@@ -0,0 +1,65 @@
+package com.simplaex.sugar.vertx.web;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * How {@link WebServiceVerticle} treats the request body of a {@link WebServiceRoute}, see {@link WebServiceRoute#bodyMode()}.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class BodyMode {
+
+  public enum Kind {
+
+    /**
+     * The body is read into memory (and file uploads are written to disk) before the route is invoked, requests
+     * with a larger body are rejected with 413 Request Entity Too Large.
+     */
+    BUFFERED,
+
+    /**
+     * The request is handed to the route paused; the route reads the body at its own pace, for example by
+     * piping {@code context.request()} into a write stream, which pauses the request while the stream is full.
+     */
+    STREAMING,
+
+    /**
+     * The body is not read at all.
+     */
+    NONE
+  }
+
+  private static final BodyMode STREAMING = new BodyMode(Kind.STREAMING, 0);
+  private static final BodyMode NONE = new BodyMode(Kind.NONE, 0);
+
+  private final Kind kind;
+
+  /**
+   * The maximum size of a buffered body in bytes, 0 meaning {@link WebServiceConfig#getWebServiceMaxBodyBytes()}.
+   */
+  private final long maxBytes;
+
+  /**
+   * Buffers bodies up to {@link WebServiceConfig#getWebServiceMaxBodyBytes()}.
+   */
+  public static BodyMode buffered() {
+    return new BodyMode(Kind.BUFFERED, 0);
+  }
+
+  public static BodyMode buffered(final long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive, got " + maxBytes);
+    }
+    return new BodyMode(Kind.BUFFERED, maxBytes);
+  }
+
+  public static BodyMode streaming() {
+    return STREAMING;
+  }
+
+  public static BodyMode none() {
+    return NONE;
+  }
+}
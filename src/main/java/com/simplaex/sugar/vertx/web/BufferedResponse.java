@@ -0,0 +1,407 @@
+package com.simplaex.sugar.vertx.web;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.Cookie;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
+import lombok.Getter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A response which is recorded in memory instead of being sent, used by {@link ResponseCache} to capture what
+ * a route renders. Sending files, pushing and custom frames are not supported. Close handlers are registered on
+ * the response of the request the route renders for, so the route still learns when its client goes away.
+ */
+final class BufferedResponse implements HttpServerResponse {
+
+  private final HttpServerResponse response;
+  private final Handler<BufferedResponse> onEnd;
+
+  private final MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+  private final MultiMap trailers = MultiMap.caseInsensitiveMultiMap();
+  @Getter
+  private final Buffer body = Buffer.buffer();
+  private int statusCode = 200;
+  @Nullable
+  private String statusMessage;
+  private boolean chunked;
+  private boolean ended;
+  @Getter
+  private boolean closed;
+  @Nullable
+  private Handler<Void> headersEndHandler;
+  @Nullable
+  private Handler<Void> bodyEndHandler;
+  @Nullable
+  private Handler<Void> endHandler;
+
+  BufferedResponse(@Nonnull final HttpServerResponse response, @Nonnull final Handler<BufferedResponse> onEnd) {
+    this.response = response;
+    this.onEnd = onEnd;
+  }
+
+  @Override
+  public HttpServerResponse exceptionHandler(final Handler<Throwable> handler) {
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse write(final Buffer data) {
+    checkNotEnded();
+    body.appendBuffer(data);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse write(final Buffer data, final Handler<AsyncResult<Void>> handler) {
+    write(data);
+    complete(handler);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse write(final String chunk, final String enc) {
+    return write(Buffer.buffer(chunk, enc));
+  }
+
+  @Override
+  public HttpServerResponse write(final String chunk, final String enc, final Handler<AsyncResult<Void>> handler) {
+    return write(Buffer.buffer(chunk, enc), handler);
+  }
+
+  @Override
+  public HttpServerResponse write(final String chunk) {
+    return write(Buffer.buffer(chunk));
+  }
+
+  @Override
+  public HttpServerResponse write(final String chunk, final Handler<AsyncResult<Void>> handler) {
+    return write(Buffer.buffer(chunk), handler);
+  }
+
+  @Override
+  public HttpServerResponse setWriteQueueMaxSize(final int maxSize) {
+    return this;
+  }
+
+  @Override
+  public boolean writeQueueFull() {
+    return false;
+  }
+
+  @Override
+  public HttpServerResponse drainHandler(final Handler<Void> handler) {
+    return this;
+  }
+
+  @Override
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  @Override
+  public HttpServerResponse setStatusCode(final int statusCode) {
+    this.statusCode = statusCode;
+    return this;
+  }
+
+  @Override
+  public String getStatusMessage() {
+    return statusMessage != null ? statusMessage : HttpResponseStatus.valueOf(statusCode).reasonPhrase();
+  }
+
+  @Override
+  public HttpServerResponse setStatusMessage(final String statusMessage) {
+    this.statusMessage = statusMessage;
+    return this;
+  }
+
+  @Nullable
+  String statusMessageIfSet() {
+    return statusMessage;
+  }
+
+  @Override
+  public HttpServerResponse setChunked(final boolean chunked) {
+    this.chunked = chunked;
+    return this;
+  }
+
+  @Override
+  public boolean isChunked() {
+    return chunked;
+  }
+
+  @Override
+  public MultiMap headers() {
+    return headers;
+  }
+
+  @Override
+  public HttpServerResponse putHeader(final String name, final String value) {
+    headers.set(name, value);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse putHeader(final CharSequence name, final CharSequence value) {
+    headers.set(name, value);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse putHeader(final String name, final Iterable<String> values) {
+    headers.set(name, values);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse putHeader(final CharSequence name, final Iterable<CharSequence> values) {
+    headers.set(name, values);
+    return this;
+  }
+
+  @Override
+  public MultiMap trailers() {
+    return trailers;
+  }
+
+  @Override
+  public HttpServerResponse putTrailer(final String name, final String value) {
+    trailers.set(name, value);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse putTrailer(final CharSequence name, final CharSequence value) {
+    trailers.set(name, value);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse putTrailer(final String name, final Iterable<String> values) {
+    trailers.set(name, values);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse putTrailer(final CharSequence name, final Iterable<CharSequence> values) {
+    trailers.set(name, values);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse closeHandler(final Handler<Void> handler) {
+    response.closeHandler(handler);
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse endHandler(final Handler<Void> handler) {
+    this.endHandler = handler;
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse writeContinue() {
+    return this;
+  }
+
+  @Override
+  public void end(final String chunk) {
+    end(Buffer.buffer(chunk));
+  }
+
+  @Override
+  public void end(final String chunk, final Handler<AsyncResult<Void>> handler) {
+    end(Buffer.buffer(chunk), handler);
+  }
+
+  @Override
+  public void end(final String chunk, final String enc) {
+    end(Buffer.buffer(chunk, enc));
+  }
+
+  @Override
+  public void end(final String chunk, final String enc, final Handler<AsyncResult<Void>> handler) {
+    end(Buffer.buffer(chunk, enc), handler);
+  }
+
+  @Override
+  public void end(final Buffer chunk) {
+    write(chunk);
+    end();
+  }
+
+  @Override
+  public void end(final Buffer chunk, final Handler<AsyncResult<Void>> handler) {
+    end(chunk);
+    complete(handler);
+  }
+
+  @Override
+  public void end(final Handler<AsyncResult<Void>> handler) {
+    end();
+    complete(handler);
+  }
+
+  @Override
+  public void end() {
+    checkNotEnded();
+    ended = true;
+    if (headersEndHandler != null) {
+      headersEndHandler.handle(null);
+    }
+    onEnd.handle(this);
+    if (bodyEndHandler != null) {
+      bodyEndHandler.handle(null);
+    }
+    if (endHandler != null) {
+      endHandler.handle(null);
+    }
+  }
+
+  @Override
+  public HttpServerResponse sendFile(final String filename, final long offset, final long length) {
+    throw new UnsupportedOperationException("Files can not be sent from cached routes");
+  }
+
+  @Override
+  public HttpServerResponse sendFile(
+    final String filename,
+    final long offset,
+    final long length,
+    final Handler<AsyncResult<Void>> resultHandler
+  ) {
+    throw new UnsupportedOperationException("Files can not be sent from cached routes");
+  }
+
+  /**
+   * Closing instead of ending the response hands it to the end handler as well, with {@link #isClosed()} set.
+   */
+  @Override
+  public void close() {
+    if (!ended) {
+      ended = true;
+      closed = true;
+      onEnd.handle(this);
+    }
+  }
+
+  @Override
+  public boolean ended() {
+    return ended;
+  }
+
+  @Override
+  public boolean closed() {
+    return closed;
+  }
+
+  @Override
+  public boolean headWritten() {
+    return ended;
+  }
+
+  @Override
+  public HttpServerResponse headersEndHandler(final Handler<Void> handler) {
+    this.headersEndHandler = handler;
+    return this;
+  }
+
+  @Override
+  public HttpServerResponse bodyEndHandler(final Handler<Void> handler) {
+    this.bodyEndHandler = handler;
+    return this;
+  }
+
+  @Override
+  public long bytesWritten() {
+    return body.length();
+  }
+
+  @Override
+  public int streamId() {
+    return -1;
+  }
+
+  @Override
+  public HttpServerResponse push(
+    final HttpMethod method,
+    final String host,
+    final String path,
+    final Handler<AsyncResult<HttpServerResponse>> handler
+  ) {
+    throw new UnsupportedOperationException("Pushing is not supported by cached routes");
+  }
+
+  @Override
+  public HttpServerResponse push(
+    final HttpMethod method,
+    final String path,
+    final MultiMap headers,
+    final Handler<AsyncResult<HttpServerResponse>> handler
+  ) {
+    throw new UnsupportedOperationException("Pushing is not supported by cached routes");
+  }
+
+  @Override
+  public HttpServerResponse push(
+    final HttpMethod method,
+    final String path,
+    final Handler<AsyncResult<HttpServerResponse>> handler
+  ) {
+    throw new UnsupportedOperationException("Pushing is not supported by cached routes");
+  }
+
+  @Override
+  public HttpServerResponse push(
+    final HttpMethod method,
+    final String host,
+    final String path,
+    final MultiMap headers,
+    final Handler<AsyncResult<HttpServerResponse>> handler
+  ) {
+    throw new UnsupportedOperationException("Pushing is not supported by cached routes");
+  }
+
+  @Override
+  public void reset(final long code) {
+    close();
+  }
+
+  @Override
+  public HttpServerResponse writeCustomFrame(final int type, final int flags, final Buffer payload) {
+    throw new UnsupportedOperationException("Custom frames are not supported by cached routes");
+  }
+
+  @Override
+  public HttpServerResponse addCookie(final Cookie cookie) {
+    headers.add("Set-Cookie", cookie.encode());
+    return this;
+  }
+
+  @Override
+  public Cookie removeCookie(final String name, final boolean invalidate) {
+    return null;
+  }
+
+  private void checkNotEnded() {
+    if (ended) {
+      throw new IllegalStateException("Response has already been written");
+    }
+  }
+
+  private static void complete(@Nullable final Handler<AsyncResult<Void>> handler) {
+    if (handler != null) {
+      handler.handle(Future.succeededFuture());
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package com.simplaex.sugar.vertx.web;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.web.Cookie;
+import io.vertx.ext.web.FileUpload;
+import io.vertx.ext.web.Locale;
+import io.vertx.ext.web.ParsedHeaderValues;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.Session;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A routing context which forwards all calls to another one. Subclasses override the methods they are
+ * interested in, for example {@link #response()} to have a route render into something else.
+ */
+class ForwardingRoutingContext implements RoutingContext {
+
+  protected final RoutingContext delegate;
+
+  ForwardingRoutingContext(@Nonnull final RoutingContext delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public HttpServerRequest request() {
+    return delegate.request();
+  }
+
+  @Override
+  public HttpServerResponse response() {
+    return delegate.response();
+  }
+
+  @Override
+  public void next() {
+    delegate.next();
+  }
+
+  @Override
+  public void fail(final int statusCode) {
+    delegate.fail(statusCode);
+  }
+
+  @Override
+  public void fail(final Throwable throwable) {
+    delegate.fail(throwable);
+  }
+
+  @Override
+  public void fail(final int statusCode, final Throwable throwable) {
+    delegate.fail(statusCode, throwable);
+  }
+
+  @Override
+  public RoutingContext put(final String key, final Object obj) {
+    delegate.put(key, obj);
+    return this;
+  }
+
+  @Override
+  public <T> T get(final String key) {
+    return delegate.get(key);
+  }
+
+  @Override
+  public <T> T remove(final String key) {
+    return delegate.remove(key);
+  }
+
+  @Override
+  public Map<String, Object> data() {
+    return delegate.data();
+  }
+
+  @Override
+  public Vertx vertx() {
+    return delegate.vertx();
+  }
+
+  @Override
+  public String mountPoint() {
+    return delegate.mountPoint();
+  }
+
+  @Override
+  public Route currentRoute() {
+    return delegate.currentRoute();
+  }
+
+  @Override
+  public String normalisedPath() {
+    return delegate.normalisedPath();
+  }
+
+  @Override
+  public Cookie getCookie(final String name) {
+    return delegate.getCookie(name);
+  }
+
+  @Override
+  public RoutingContext addCookie(final io.vertx.core.http.Cookie cookie) {
+    delegate.addCookie(cookie);
+    return this;
+  }
+
+  @Override
+  public RoutingContext addCookie(final Cookie cookie) {
+    delegate.addCookie(cookie);
+    return this;
+  }
+
+  @Override
+  public Cookie removeCookie(final String name, final boolean invalidate) {
+    return delegate.removeCookie(name, invalidate);
+  }
+
+  @Override
+  public int cookieCount() {
+    return delegate.cookieCount();
+  }
+
+  @Override
+  public Set<Cookie> cookies() {
+    return delegate.cookies();
+  }
+
+  @Override
+  public Map<String, io.vertx.core.http.Cookie> cookieMap() {
+    return delegate.cookieMap();
+  }
+
+  @Override
+  public String getBodyAsString() {
+    return delegate.getBodyAsString();
+  }
+
+  @Override
+  public String getBodyAsString(final String encoding) {
+    return delegate.getBodyAsString(encoding);
+  }
+
+  @Override
+  public JsonObject getBodyAsJson() {
+    return delegate.getBodyAsJson();
+  }
+
+  @Override
+  public JsonArray getBodyAsJsonArray() {
+    return delegate.getBodyAsJsonArray();
+  }
+
+  @Override
+  public Buffer getBody() {
+    return delegate.getBody();
+  }
+
+  @Override
+  public Set<FileUpload> fileUploads() {
+    return delegate.fileUploads();
+  }
+
+  @Override
+  public Session session() {
+    return delegate.session();
+  }
+
+  @Override
+  public User user() {
+    return delegate.user();
+  }
+
+  @Override
+  public Throwable failure() {
+    return delegate.failure();
+  }
+
+  @Override
+  public int statusCode() {
+    return delegate.statusCode();
+  }
+
+  @Override
+  public String getAcceptableContentType() {
+    return delegate.getAcceptableContentType();
+  }
+
+  @Override
+  public ParsedHeaderValues parsedHeaders() {
+    return delegate.parsedHeaders();
+  }
+
+  @Override
+  public int addHeadersEndHandler(final Handler<Void> handler) {
+    return delegate.addHeadersEndHandler(handler);
+  }
+
+  @Override
+  public boolean removeHeadersEndHandler(final int handlerID) {
+    return delegate.removeHeadersEndHandler(handlerID);
+  }
+
+  @Override
+  public int addBodyEndHandler(final Handler<Void> handler) {
+    return delegate.addBodyEndHandler(handler);
+  }
+
+  @Override
+  public boolean removeBodyEndHandler(final int handlerID) {
+    return delegate.removeBodyEndHandler(handlerID);
+  }
+
+  @Override
+  public boolean failed() {
+    return delegate.failed();
+  }
+
+  @Override
+  public void setBody(final Buffer body) {
+    delegate.setBody(body);
+  }
+
+  @Override
+  public void setSession(final Session session) {
+    delegate.setSession(session);
+  }
+
+  @Override
+  public void setUser(final User user) {
+    delegate.setUser(user);
+  }
+
+  @Override
+  public void clearUser() {
+    delegate.clearUser();
+  }
+
+  @Override
+  public void setAcceptableContentType(final String contentType) {
+    delegate.setAcceptableContentType(contentType);
+  }
+
+  @Override
+  public void reroute(final HttpMethod method, final String path) {
+    delegate.reroute(method, path);
+  }
+
+  @Override
+  public List<Locale> acceptableLocales() {
+    return delegate.acceptableLocales();
+  }
+
+  @Override
+  public Map<String, String> pathParams() {
+    return delegate.pathParams();
+  }
+
+  @Override
+  public String pathParam(final String name) {
+    return delegate.pathParam(name);
+  }
+
+  @Override
+  public MultiMap queryParams() {
+    return delegate.queryParams();
+  }
+
+  @Override
+  public List<String> queryParam(final String query) {
+    return delegate.queryParam(query);
+  }
+}
@@ -0,0 +1,142 @@
+package com.simplaex.sugar.vertx.web;
+
+import com.simplaex.http.StatusCode;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.log4j.Log4j2;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects requests with 503 Service Unavailable and a Retry-After header while the event loop of a
+ * {@link WebServiceVerticle} instance is overloaded, instead of letting every request time out.
+ * <p>
+ * The load is the event loop lag (how late a periodic timer fires, see
+ * {@link WebServiceConfig#getWebServiceLagProbeIntervalMillis()}) relative to
+ * {@link WebServiceConfig#getWebServiceMaxEventLoopLagMillis()}, or the number of requests in flight relative to
+ * {@link WebServiceConfig#getWebServiceMaxInFlightRequests()}, whichever is higher. Requests to routes with
+ * {@link RoutePriority#LOW} are shed from a load of 1 on, {@link RoutePriority#NORMAL} from 1.5 on and
+ * {@link RoutePriority#HIGH} from 2 on; {@link RoutePriority#CRITICAL} routes are never shed. A threshold of 0
+ * disables that measure.
+ * <p>
+ * Every verticle instance has a shedder of its own, so it is only used from one event loop.
+ */
+@Log4j2
+public class LoadShedder {
+
+  private static final String TRACKED = LoadShedder.class.getName() + ".tracked";
+
+  private final Vertx vertx;
+  private final long maxLagMillis;
+  private final int maxInFlight;
+  private final long probeIntervalMillis;
+  private final String retryAfterSeconds;
+
+  private volatile long lagMillis = 0;
+  private volatile int inFlight = 0;
+  private final Set<RoutingContext> tracked = Collections.newSetFromMap(new IdentityHashMap<>());
+  private final Map<RoutePriority, LongAdder> shed = new EnumMap<>(RoutePriority.class);
+
+  public LoadShedder(@Nonnull final Vertx vertx, @Nonnull final WebServiceConfig config) {
+    this.vertx = vertx;
+    this.maxLagMillis = config.getWebServiceMaxEventLoopLagMillis();
+    this.maxInFlight = config.getWebServiceMaxInFlightRequests();
+    this.probeIntervalMillis = Math.max(1, config.getWebServiceLagProbeIntervalMillis());
+    this.retryAfterSeconds = Long.toString(config.getWebServiceRetryAfterSeconds());
+    for (final RoutePriority priority : RoutePriority.values()) {
+      shed.put(priority, new LongAdder());
+    }
+  }
+
+  /**
+   * Starts measuring the event loop lag and sweeping requests whose connection was closed, to be called on the
+   * event loop of the verticle.
+   */
+  public void start() {
+    if (maxLagMillis > 0) {
+      probe(System.nanoTime());
+    }
+    vertx.setPeriodic(probeIntervalMillis, ignored -> sweep());
+  }
+
+  private void probe(final long scheduledAt) {
+    vertx.setTimer(probeIntervalMillis, ignored -> {
+      final long now = System.nanoTime();
+      final long sample = Math.max(0, TimeUnit.NANOSECONDS.toMillis(now - scheduledAt) - probeIntervalMillis);
+      // rise immediately, decay over a few probes
+      lagMillis = Math.max(sample, lagMillis / 2);
+      probe(now);
+    });
+  }
+
+  /**
+   * Counts the request as in flight until its response has been ended or its connection closed; to be installed
+   * ahead of all routes. An ended response is noticed by a body end handler, a closed connection by a periodic
+   * sweep (rather than a close handler, which routes may replace).
+   */
+  public void track(@Nonnull final RoutingContext context) {
+    if (context.get(TRACKED) == null) {
+      context.put(TRACKED, Boolean.TRUE);
+      tracked.add(context);
+      inFlight = tracked.size();
+      context.addBodyEndHandler(ignored -> {
+        tracked.remove(context);
+        inFlight = tracked.size();
+      });
+    }
+    context.next();
+  }
+
+  private void sweep() {
+    if (tracked.removeIf(context -> context.response().closed() || context.response().ended())) {
+      inFlight = tracked.size();
+    }
+  }
+
+  /**
+   * The handler admitting or rejecting requests to routes of the given priority.
+   */
+  @Nonnull
+  public Handler<RoutingContext> admit(@Nonnull final RoutePriority priority) {
+    if (priority == RoutePriority.CRITICAL) {
+      return RoutingContext::next;
+    }
+    final double threshold = priority == RoutePriority.LOW ? 1.0 : priority == RoutePriority.NORMAL ? 1.5 : 2.0;
+    return context -> {
+      if (load() < threshold) {
+        context.next();
+        return;
+      }
+      shed.get(priority).increment();
+      log.debug("Shedding {} request to {}, lag={}ms inFlight={}", priority, context.request().path(), lagMillis, inFlight);
+      context.response().putHeader("Retry-After", retryAfterSeconds);
+      RouteUtil.error(context, StatusCode.SERVICE_UNAVAILABLE);
+    };
+  }
+
+  public double load() {
+    final double lagLoad = maxLagMillis > 0 ? (double) lagMillis / maxLagMillis : 0;
+    final double inFlightLoad = maxInFlight > 0 ? (double) inFlight / maxInFlight : 0;
+    return Math.max(lagLoad, inFlightLoad);
+  }
+
+  @Nonnull
+  public JsonObject toJson() {
+    final JsonObject shedJson = new JsonObject();
+    shed.forEach((priority, count) -> shedJson.put(priority.name(), count.sum()));
+    return new JsonObject()
+      .put("lagMillis", lagMillis)
+      .put("inFlight", inFlight)
+      .put("load", load())
+      .put("shed", shedJson);
+  }
+}
@@ -0,0 +1,36 @@
+package com.simplaex.sugar.vertx.web;
+
+import com.simplaex.http.StatusCode;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.annotation.Nonnull;
+import java.util.function.Supplier;
+
+/**
+ * Responds with a snapshot of some metrics as json, for example
+ * {@code router.get("/metrics/codecs").handler(new MetricsReporter(CodecMetrics.global()::toJson))}.
+ */
+public class MetricsReporter implements Handler<RoutingContext> {
+
+  @Nonnull
+  private final Supplier<JsonObject> metrics;
+
+  public MetricsReporter(@Nonnull final Supplier<JsonObject> metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void handle(@Nonnull final RoutingContext context) {
+    try {
+      context
+        .response()
+        .setStatusCode(StatusCode.OK.getCode())
+        .putHeader("Content-Type", "application/json")
+        .end(metrics.get().encodePrettily());
+    } catch (final Exception exc) {
+      RouteUtil.error(context, StatusCode.INTERNAL_SERVER_ERROR, exc);
+    }
+  }
+}
@@ -0,0 +1,335 @@
+package com.simplaex.sugar.vertx.web;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the responses of a route to GET requests as configured by its {@link ResponseCaching}.
+ * <p>
+ * The route renders into a {@link BufferedResponse}; responses with status 200 are cached for the TTL, keyed by
+ * the path and the configured query parameters and headers, and evicted least recently used first once the
+ * cached bodies exceed {@link ResponseCaching#getMaxBytes()}. Responses setting cookies or
+ * {@code Cache-Control: no-store} are not cached. Every cached response carries an ETag (the one set by the
+ * route, or a hash of the body computed once per entry), requests with a matching {@code If-None-Match} are
+ * answered with 304 Not Modified. Concurrent misses for the same key are collapsed into a single invocation of
+ * the route, the other requests get the same response if it is cached.
+ * <p>
+ * If the response is not cached, or the route does not end it but calls {@code next()} or {@code fail(...)}
+ * instead, the requests waiting for it are handed to the route one by one.
+ */
+public class ResponseCache implements Handler<RoutingContext> {
+
+  private static final int ENTRY_OVERHEAD_BYTES = 256;
+  private static final String[] NOT_MODIFIED_HEADERS = {"Cache-Control", "Expires", "Vary"};
+
+  private final ResponseCaching caching;
+  private final Handler<RoutingContext> handler;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, List<Waiter>> loading = new HashMap<>();
+  private long bytes = 0;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder notModified = new LongAdder();
+
+  public ResponseCache(@Nonnull final ResponseCaching caching, @Nonnull final Handler<RoutingContext> handler) {
+    this.caching = caching;
+    this.handler = handler;
+  }
+
+  @RequiredArgsConstructor
+  private static final class Entry {
+    private final int statusCode;
+    @Nullable
+    private final String statusMessage;
+    private final MultiMap headers;
+    private final Buffer body;
+    @Nullable
+    private final String etag;
+    private final long expiresAt;
+    private final long weight;
+  }
+
+  @RequiredArgsConstructor
+  private static final class Waiter {
+    private final RoutingContext context;
+    private final Context vertxContext;
+  }
+
+  @Override
+  public void handle(@Nonnull final RoutingContext context) {
+    if (context.request().method() != HttpMethod.GET) {
+      handler.handle(context);
+      return;
+    }
+    final String key = key(context.request());
+    final Waiter waiter = new Waiter(context, Vertx.currentContext());
+    final List<Waiter> ownWaiters = new ArrayList<>();
+    final Entry cached;
+    synchronized (this) {
+      cached = lookup(key);
+      if (cached == null) {
+        misses.increment();
+        final List<Waiter> waiters = loading.get(key);
+        if (waiters != null) {
+          waiters.add(waiter);
+          return;
+        }
+        loading.put(key, ownWaiters);
+      } else {
+        hits.increment();
+      }
+    }
+    if (cached != null) {
+      respond(context, cached);
+      return;
+    }
+    loads.increment();
+    final BufferedResponse buffered = new BufferedResponse(context.response(), response -> loaded(key, ownWaiters, waiter, response));
+    try {
+      handler.handle(new ForwardingRoutingContext(context) {
+        @Override
+        public HttpServerResponse response() {
+          return buffered;
+        }
+
+        @Override
+        public void next() {
+          abandon(key, ownWaiters);
+          super.next();
+        }
+
+        @Override
+        public void fail(final int statusCode) {
+          abandon(key, ownWaiters);
+          super.fail(statusCode);
+        }
+
+        @Override
+        public void fail(final Throwable throwable) {
+          abandon(key, ownWaiters);
+          super.fail(throwable);
+        }
+
+        @Override
+        public void fail(final int statusCode, final Throwable throwable) {
+          abandon(key, ownWaiters);
+          super.fail(statusCode, throwable);
+        }
+      });
+    } catch (final RuntimeException exc) {
+      abandon(key, ownWaiters);
+      throw exc;
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  @Nonnull
+  public synchronized JsonObject toJson() {
+    return new JsonObject()
+      .put("entries", entries.size())
+      .put("bytes", bytes)
+      .put("hits", hits.sum())
+      .put("misses", misses.sum())
+      .put("loads", loads.sum())
+      .put("notModified", notModified.sum());
+  }
+
+  private void loaded(final String key, final List<Waiter> waiters, final Waiter leader, final BufferedResponse response) {
+    if (response.isClosed()) {
+      if (abandon(key, waiters)) {
+        run(leader, () -> leader.context.response().close());
+      }
+      return;
+    }
+    final Entry entry = entry(response);
+    if (!isCacheable(response, entry)) {
+      // e.g. personalized or an error, so the waiting requests get responses of their own
+      if (abandon(key, waiters)) {
+        run(leader, () -> respond(leader.context, entry));
+      }
+      return;
+    }
+    synchronized (this) {
+      if (!loading.remove(key, waiters)) {
+        return;
+      }
+      store(key, entry);
+    }
+    run(leader, () -> respond(leader.context, entry));
+    for (final Waiter waiter : waiters) {
+      run(waiter, () -> respond(waiter.context, entry));
+    }
+  }
+
+  /**
+   * Hands the waiting requests to the route itself, returns false if the load has already been completed.
+   */
+  private boolean abandon(final String key, final List<Waiter> waiters) {
+    synchronized (this) {
+      if (!loading.remove(key, waiters)) {
+        return false;
+      }
+    }
+    for (final Waiter waiter : waiters) {
+      run(waiter, () -> handler.handle(waiter.context));
+    }
+    return true;
+  }
+
+  private void respond(final RoutingContext context, final Entry entry) {
+    final HttpServerResponse response = context.response();
+    if (entry.etag != null && matches(context.request().getHeader(HttpHeaders.IF_NONE_MATCH), entry.etag)) {
+      notModified.increment();
+      response.setStatusCode(304).putHeader(HttpHeaders.ETAG, entry.etag);
+      for (final String name : NOT_MODIFIED_HEADERS) {
+        if (entry.headers.contains(name)) {
+          response.headers().set(name, entry.headers.getAll(name));
+        }
+      }
+      response.end();
+      return;
+    }
+    response.setStatusCode(entry.statusCode);
+    if (entry.statusMessage != null) {
+      response.setStatusMessage(entry.statusMessage);
+    }
+    response.headers().addAll(entry.headers);
+    if (entry.etag != null) {
+      response.putHeader(HttpHeaders.ETAG, entry.etag);
+    }
+    response.end(entry.body);
+  }
+
+  private Entry entry(final BufferedResponse response) {
+    final MultiMap headers = MultiMap.caseInsensitiveMultiMap().addAll(response.headers());
+    headers.remove(HttpHeaders.CONTENT_LENGTH);
+    headers.remove(HttpHeaders.TRANSFER_ENCODING);
+    final String etag = response.getStatusCode() != 200
+      ? null
+      : headers.contains(HttpHeaders.ETAG) ? headers.get(HttpHeaders.ETAG) : etag(response.getBody());
+    headers.remove(HttpHeaders.ETAG);
+    return new Entry(
+      response.getStatusCode(),
+      response.statusMessageIfSet(),
+      headers,
+      response.getBody(),
+      etag,
+      System.currentTimeMillis() + caching.getTtlMillis(),
+      response.getBody().length() + ENTRY_OVERHEAD_BYTES
+    );
+  }
+
+  private boolean isCacheable(final BufferedResponse response, final Entry entry) {
+    final String cacheControl = response.headers().get(HttpHeaders.CACHE_CONTROL);
+    return entry.statusCode == 200
+      && entry.weight <= caching.getMaxBytes()
+      && !response.headers().contains(HttpHeaders.SET_COOKIE)
+      && (cacheControl == null || !cacheControl.contains("no-store"));
+  }
+
+  @Nullable
+  private Entry lookup(final String key) {
+    final Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expiresAt <= System.currentTimeMillis()) {
+      remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  private void store(final String key, final Entry entry) {
+    remove(key);
+    entries.put(key, entry);
+    bytes += entry.weight;
+    final Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (bytes > caching.getMaxBytes() && eldest.hasNext()) {
+      bytes -= eldest.next().getValue().weight;
+      eldest.remove();
+    }
+  }
+
+  private void remove(final String key) {
+    final Entry removed = entries.remove(key);
+    if (removed != null) {
+      bytes -= removed.weight;
+    }
+  }
+
+  private String key(final HttpServerRequest request) {
+    final StringBuilder key = new StringBuilder(request.path());
+    for (final String name : caching.getQueryParams()) {
+      key.append('\n').append(name).append('=').append(request.params().getAll(name));
+    }
+    for (final String name : caching.getHeaders()) {
+      key.append('\n').append(name).append(':').append(request.headers().getAll(name));
+    }
+    return key.toString();
+  }
+
+  private static void run(final Waiter waiter, final Runnable runnable) {
+    if (waiter.vertxContext == null || waiter.vertxContext == Vertx.currentContext()) {
+      runnable.run();
+    } else {
+      waiter.vertxContext.runOnContext(ignored -> runnable.run());
+    }
+  }
+
+  /**
+   * Compares the ETags listed in an If-None-Match header weakly with the given one, as GET requests require.
+   */
+  static boolean matches(@Nullable final String ifNoneMatch, @Nonnull final String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    final String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+    for (final String candidate : ifNoneMatch.split(",")) {
+      final String trimmed = candidate.trim();
+      if (trimmed.equals("*") || (trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed).equals(opaqueTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String etag(final Buffer body) {
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes());
+      return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + '"';
+    } catch (final NoSuchAlgorithmException exc) {
+      throw new IllegalStateException(exc);
+    }
+  }
+}
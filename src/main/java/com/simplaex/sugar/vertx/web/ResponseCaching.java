@@ -0,0 +1,69 @@
+package com.simplaex.sugar.vertx.web;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Whether and how the responses of a {@link WebServiceRoute} to GET requests are cached, see
+ * {@link WebServiceRoute#responseCaching()} and {@link ResponseCache}.
+ * <p>
+ * Cached responses are keyed by the path plus the given query parameters and request headers; responses which
+ * depend on anything else (like the user or cookies) must not be cached.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ResponseCaching {
+
+  public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+  private static final ResponseCaching NONE = new ResponseCaching(0, Collections.emptyList(), Collections.emptyList(), 0);
+
+  private final long ttlMillis;
+  private final List<String> queryParams;
+  private final List<String> headers;
+
+  /**
+   * The maximum size of all bodies cached for the route together.
+   */
+  private final long maxBytes;
+
+  public static ResponseCaching none() {
+    return NONE;
+  }
+
+  /**
+   * Caches responses for the given time, keyed by the path only.
+   */
+  public static ResponseCaching ttl(@Nonnegative final long ttlMillis) {
+    if (ttlMillis <= 0) {
+      throw new IllegalArgumentException("ttlMillis must be positive, got " + ttlMillis);
+    }
+    return new ResponseCaching(ttlMillis, Collections.emptyList(), Collections.emptyList(), DEFAULT_MAX_BYTES);
+  }
+
+  public boolean isEnabled() {
+    return ttlMillis > 0;
+  }
+
+  @Nonnull
+  public ResponseCaching varyingOnQueryParams(@Nonnull final String... names) {
+    return new ResponseCaching(ttlMillis, Collections.unmodifiableList(Arrays.asList(names.clone())), headers, maxBytes);
+  }
+
+  @Nonnull
+  public ResponseCaching varyingOnHeaders(@Nonnull final String... names) {
+    return new ResponseCaching(ttlMillis, queryParams, Collections.unmodifiableList(Arrays.asList(names.clone())), maxBytes);
+  }
+
+  @Nonnull
+  public ResponseCaching maxBytes(@Nonnegative final long maxBytes) {
+    return new ResponseCaching(ttlMillis, queryParams, headers, maxBytes);
+  }
+}
@@ -0,0 +1,446 @@
+package com.simplaex.sugar.vertx.web;
+
+import com.simplaex.http.StatusCode;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.ConnectionPoolTooBusyException;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.Pump;
+import io.vertx.ext.web.RoutingContext;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Forwards requests to one of several upstream servers and streams the response back.
+ * <p>
+ * Bodies are streamed in both directions, so a slow client pauses reading from the upstream and a slow upstream
+ * pauses reading from the client; neither body is ever held in memory as a whole. Routes using the proxy should
+ * use {@link BodyMode#streaming()}, with a buffered body the buffered body is sent instead.
+ * <p>
+ * Every event loop uses an http client of its own, which keeps up to {@link #maxConnections(int)} connections
+ * per upstream alive and lets up to {@link #maxWaitQueueSize(int)} requests wait for one of them; beyond that
+ * the client gets 503 Service Unavailable. The request body is only read from the client once a connection to
+ * the upstream is established. If the upstream can not be connected to the client gets 502 Bad Gateway, if it
+ * does not start responding within {@link #timeout(long)} milliseconds 504 Gateway Timeout. If the upstream fails while
+ * the response is being streamed, or stops sending it for {@link #idleTimeout(long)} milliseconds while the client
+ * could take more, the upstream request is reset and the connection to the client is closed.
+ * <p>
+ * The proxy is configured using the fluent setters before it handles its first request, afterwards it may be
+ * shared by all event loops. The http clients are closed by {@link #close()}, those created on the context of a
+ * verticle also when the verticle is undeployed.
+ */
+@Log4j2
+public class ReverseProxy implements Handler<RoutingContext> {
+
+  public enum Balancing {
+
+    /**
+     * Upstreams take turns.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * The upstream with the fewest requests in flight is chosen, ties are broken round robin.
+     */
+    LEAST_IN_FLIGHT
+  }
+
+  private static final Set<String> HOP_BY_HOP_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+  static {
+    HOP_BY_HOP_HEADERS.addAll(Arrays.asList(
+      "Connection", "Keep-Alive", "Proxy-Authenticate", "Proxy-Authorization",
+      "TE", "Trailer", "Transfer-Encoding", "Upgrade"
+    ));
+  }
+
+  private final Vertx vertx;
+  private final List<Upstream> upstreams;
+  private final String clientKey = ReverseProxy.class.getName() + "@" + Integer.toHexString(System.identityHashCode(this));
+  private final AtomicInteger next = new AtomicInteger();
+  private final Set<HttpClient> clients = ConcurrentHashMap.newKeySet();
+
+  private Balancing balancing = Balancing.LEAST_IN_FLIGHT;
+  private int connectTimeoutMillis = 5000;
+  private long timeoutMillis = 30000;
+  private long idleTimeoutMillis = 30000;
+  private int maxConnections = 16;
+  private int maxWaitQueueSize = 64;
+  @Nullable
+  private Consumer<HttpClientRequest> requestAugmentor;
+  @Nullable
+  private Consumer<HttpServerResponse> responseAugmentor;
+
+  public ReverseProxy(@Nonnull final Vertx vertx, @Nonnull final List<Upstream> upstreams) {
+    if (upstreams.isEmpty()) {
+      throw new IllegalArgumentException("At least one upstream is required");
+    }
+    this.vertx = vertx;
+    this.upstreams = Collections.unmodifiableList(new ArrayList<>(upstreams));
+  }
+
+  public static final class Upstream {
+
+    @Getter
+    private final String host;
+    @Getter
+    private final int port;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private Upstream(final String host, final int port) {
+      this.host = host;
+      this.port = port;
+    }
+
+    @Nonnull
+    public static Upstream of(@Nonnull final String host, @Nonnegative final int port) {
+      return new Upstream(host, port);
+    }
+
+    public int getInFlight() {
+      return inFlight.get();
+    }
+
+    @Override
+    public String toString() {
+      return host + ":" + port;
+    }
+  }
+
+  @Nonnull
+  public ReverseProxy balancing(@Nonnull final Balancing balancing) {
+    this.balancing = balancing;
+    return this;
+  }
+
+  @Nonnull
+  public ReverseProxy connectTimeout(@Nonnegative final int millis) {
+    this.connectTimeoutMillis = millis;
+    return this;
+  }
+
+  /**
+   * The time the upstream may take to start responding.
+   */
+  @Nonnull
+  public ReverseProxy timeout(@Nonnegative final long millis) {
+    this.timeoutMillis = millis;
+    return this;
+  }
+
+  /**
+   * The time the upstream may pause sending the response body while the client is ready for more,
+   * 0 meaning no limit.
+   */
+  @Nonnull
+  public ReverseProxy idleTimeout(@Nonnegative final long millis) {
+    this.idleTimeoutMillis = millis;
+    return this;
+  }
+
+  /**
+   * The maximum number of connections per upstream and event loop.
+   */
+  @Nonnull
+  public ReverseProxy maxConnections(@Nonnegative final int maxConnections) {
+    this.maxConnections = maxConnections;
+    return this;
+  }
+
+  /**
+   * The maximum number of requests per upstream and event loop waiting for a connection.
+   */
+  @Nonnull
+  public ReverseProxy maxWaitQueueSize(@Nonnegative final int maxWaitQueueSize) {
+    this.maxWaitQueueSize = maxWaitQueueSize;
+    return this;
+  }
+
+  @Nonnull
+  public ReverseProxy requestAugmentor(@Nullable final Consumer<HttpClientRequest> requestAugmentor) {
+    this.requestAugmentor = requestAugmentor;
+    return this;
+  }
+
+  @Nonnull
+  public ReverseProxy responseAugmentor(@Nullable final Consumer<HttpServerResponse> responseAugmentor) {
+    this.responseAugmentor = responseAugmentor;
+    return this;
+  }
+
+  @Override
+  public void handle(@Nonnull final RoutingContext context) {
+    final HttpServerRequest request = context.request();
+    final HttpServerResponse response = context.response();
+    final Upstream upstream = select();
+    upstream.inFlight.incrementAndGet();
+    final AtomicBoolean done = new AtomicBoolean(false);
+    final Runnable finish = () -> {
+      if (done.compareAndSet(false, true)) {
+        upstream.inFlight.decrementAndGet();
+      }
+    };
+
+    final HttpClientRequest upstreamRequest = client().request(request.method(), upstream.port, upstream.host, request.uri());
+    upstreamRequest.setTimeout(timeoutMillis);
+    copyHeaders(request.headers(), upstreamRequest.headers());
+    final String forwardedFor = request.getHeader("X-Forwarded-For");
+    final String remoteHost = request.remoteAddress() == null ? "unknown" : request.remoteAddress().host();
+    upstreamRequest.putHeader("X-Forwarded-For", forwardedFor == null ? remoteHost : forwardedFor + ", " + remoteHost);
+    if (requestAugmentor != null) {
+      requestAugmentor.accept(upstreamRequest);
+    }
+
+    final IdleTimer idleTimer = new IdleTimer(() -> {
+      log.warn("Upstream {} stalled while streaming the response to {}", upstream, request.uri());
+      finish.run();
+      upstreamRequest.reset();
+      response.close();
+    });
+    upstreamRequest.exceptionHandler(exc -> {
+      idleTimer.stop();
+      finish.run();
+      if (response.ended() || response.closed()) {
+        return;
+      }
+      if (response.headWritten()) {
+        log.warn("Upstream {} failed while streaming the response to {}", upstream, request.uri(), exc);
+        response.close();
+      } else if (exc instanceof ConnectionPoolTooBusyException) {
+        log.warn("Too many requests waiting for a connection to upstream {}, rejecting {}", upstream, request.uri());
+        RouteUtil.error(context, StatusCode.SERVICE_UNAVAILABLE, exc);
+      } else if (exc instanceof TimeoutException) {
+        log.warn("Upstream {} timed out on {}", upstream, request.uri());
+        RouteUtil.error(context, StatusCode.GATEWAY_TIMEOUT, exc);
+      } else {
+        log.warn("Upstream {} failed on {}", upstream, request.uri(), exc);
+        RouteUtil.error(context, StatusCode.BAD_GATEWAY, exc);
+      }
+    });
+    upstreamRequest.handler(upstreamResponse -> {
+      response.setStatusCode(upstreamResponse.statusCode());
+      response.setStatusMessage(upstreamResponse.statusMessage());
+      copyHeaders(upstreamResponse.headers(), response.headers());
+      if (!response.headers().contains(HttpHeaders.CONTENT_LENGTH)) {
+        response.setChunked(true);
+      }
+      if (responseAugmentor != null) {
+        responseAugmentor.accept(response);
+      }
+      upstreamResponse.handler(chunk -> {
+        idleTimer.touch();
+        response.write(chunk);
+        if (response.writeQueueFull()) {
+          // the client is slow, not the upstream
+          idleTimer.paused = true;
+          upstreamResponse.pause();
+          response.drainHandler(ignored -> {
+            idleTimer.paused = false;
+            idleTimer.touch();
+            upstreamResponse.resume();
+          });
+        }
+      });
+      upstreamResponse.exceptionHandler(exc -> {
+        idleTimer.stop();
+        finish.run();
+        if (!response.closed()) {
+          log.warn("Failed streaming the response of upstream {} to {}", upstream, request.uri(), exc);
+          response.close();
+        }
+      });
+      upstreamResponse.endHandler(ignored -> {
+        idleTimer.stop();
+        finish.run();
+        if (!response.closed()) {
+          response.end();
+        }
+      });
+      idleTimer.start();
+    });
+    response.closeHandler(ignored -> {
+      idleTimer.stop();
+      if (!done.get()) {
+        upstreamRequest.reset();
+        finish.run();
+      }
+    });
+
+    final Buffer body = context.getBody();
+    if (body != null) {
+      upstreamRequest.end(body);
+    } else if (request.isEnded()) {
+      upstreamRequest.end();
+    } else {
+      if (!upstreamRequest.headers().contains(HttpHeaders.CONTENT_LENGTH)) {
+        upstreamRequest.setChunked(true);
+      }
+      request.exceptionHandler(exc -> {
+        log.warn("Failed streaming the request {} to upstream {}", request.uri(), upstream, exc);
+        upstreamRequest.reset();
+      });
+      request.endHandler(ignored -> upstreamRequest.end());
+      // until there is a connection writeQueueFull() is false and the whole body would be buffered, so only
+      // start reading it once the head is sent; a pipe would replace the exception handler, so pump instead
+      upstreamRequest.sendHead(version -> {
+        Pump.pump(request, upstreamRequest).start();
+        request.resume();
+      });
+    }
+  }
+
+  /**
+   * Closes the http clients of all event loops; requests handled afterwards create new ones.
+   */
+  public void close() {
+    for (final HttpClient client : clients) {
+      if (clients.remove(client)) {
+        client.close();
+      }
+    }
+  }
+
+  /**
+   * The number of requests in flight per upstream.
+   */
+  @Nonnull
+  public JsonObject toJson() {
+    final JsonArray json = new JsonArray();
+    for (final Upstream upstream : upstreams) {
+      json.add(new JsonObject().put("upstream", upstream.toString()).put("inFlight", upstream.getInFlight()));
+    }
+    return new JsonObject().put("balancing", balancing.name()).put("upstreams", json);
+  }
+
+  private Upstream select() {
+    final int size = upstreams.size();
+    final int start = Math.floorMod(next.getAndIncrement(), size);
+    if (balancing == Balancing.ROUND_ROBIN) {
+      return upstreams.get(start);
+    }
+    Upstream best = upstreams.get(start);
+    for (int i = 1; i < size; i += 1) {
+      final Upstream candidate = upstreams.get((start + i) % size);
+      if (candidate.inFlight.get() < best.inFlight.get()) {
+        best = candidate;
+      }
+    }
+    return best;
+  }
+
+  private HttpClient client() {
+    final Context context = vertx.getOrCreateContext();
+    final HttpClient existing = context.get(clientKey);
+    if (existing != null && clients.contains(existing)) {
+      return existing;
+    }
+    final HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+      .setKeepAlive(true)
+      .setMaxPoolSize(maxConnections)
+      .setMaxWaitQueueSize(maxWaitQueueSize)
+      .setConnectTimeout(connectTimeoutMillis)
+      .setTryUseCompression(false));
+    context.put(clientKey, client);
+    clients.add(client);
+    // the client closes itself when the verticle is undeployed
+    context.addCloseHook(completion -> {
+      clients.remove(client);
+      completion.handle(Future.succeededFuture());
+    });
+    return client;
+  }
+
+  /**
+   * Fires if it is neither touched, paused nor stopped within the idle timeout; rather than rescheduling a timer
+   * for every chunk it checks the time of the last chunk when it fires. Used on a single event loop only.
+   */
+  private final class IdleTimer {
+
+    private final Runnable onTimeout;
+    private long touchedAt = System.nanoTime();
+    private boolean paused = false;
+    private boolean stopped = false;
+    private long timerId = -1;
+
+    private IdleTimer(final Runnable onTimeout) {
+      this.onTimeout = onTimeout;
+    }
+
+    private void touch() {
+      touchedAt = System.nanoTime();
+    }
+
+    private void start() {
+      touch();
+      if (idleTimeoutMillis > 0) {
+        schedule(idleTimeoutMillis);
+      }
+    }
+
+    private void schedule(final long delayMillis) {
+      timerId = vertx.setTimer(Math.max(1, delayMillis), ignored -> {
+        if (stopped) {
+          return;
+        }
+        final long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - touchedAt);
+        if (paused) {
+          schedule(idleTimeoutMillis);
+        } else if (idleMillis >= idleTimeoutMillis) {
+          stopped = true;
+          onTimeout.run();
+        } else {
+          schedule(idleTimeoutMillis - idleMillis);
+        }
+      });
+    }
+
+    private void stop() {
+      stopped = true;
+      if (timerId != -1) {
+        vertx.cancelTimer(timerId);
+      }
+    }
+  }
+
+  private static void copyHeaders(@Nonnull final MultiMap from, @Nonnull final MultiMap to) {
+    final Set<String> connectionTokens = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    for (final String connection : from.getAll(HttpHeaders.CONNECTION)) {
+      for (final String token : connection.split(",")) {
+        connectionTokens.add(token.trim());
+      }
+    }
+    for (final Map.Entry<String, String> header : from) {
+      if (!HOP_BY_HOP_HEADERS.contains(header.getKey()) && !connectionTokens.contains(header.getKey())) {
+        to.add(header.getKey(), header.getValue());
+      }
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.simplaex.sugar.vertx.web;
+
+/**
+ * How early requests to a {@link WebServiceRoute} are rejected by the {@link LoadShedder} when the web service is
+ * overloaded, see {@link WebServiceRoute#priority()}.
+ */
+public enum RoutePriority {
+
+  /**
+   * Shed as soon as a threshold is reached.
+   */
+  LOW,
+
+  /**
+   * Shed once a threshold is exceeded by half.
+   */
+  NORMAL,
+
+  /**
+   * Shed once a threshold is exceeded twice.
+   */
+  HIGH,
+
+  /**
+   * Never shed, meant for health checks and the like.
+   */
+  CRITICAL
+}
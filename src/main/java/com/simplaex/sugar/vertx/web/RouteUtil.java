@@ -6,11 +6,13 @@ import com.simplaex.bedrock.Pair;
 import com.simplaex.bedrock.Seq;
 import com.simplaex.http.StatusCode;
 import io.vertx.core.Handler;
+import io.vertx.core.http.ConnectionPoolTooBusyException;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.Pump;
 import io.vertx.ext.web.RoutingContext;
 import lombok.experimental.UtilityClass;
 import lombok.extern.log4j.Log4j2;
@@ -125,6 +127,13 @@ public class RouteUtil {
       .putHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, User-Agent");
   }
 
+  /**
+   * Forwards the (paused) request to the given target and streams the response back, pausing either side while
+   * the other can not keep up. The request body is only read once a connection to the target is established, so
+   * the client should bound {@link io.vertx.core.http.HttpClientOptions#setMaxWaitQueueSize(int)}; requests it
+   * rejects are answered with 503 Service Unavailable, failing connections with 502 Bad Gateway. See
+   * {@link ReverseProxy} for balancing across several targets and timeouts.
+   */
   public static void forwardRequest(
     @Nonnull final HttpClient client,
     @Nonnull final RoutingContext context,
@@ -146,8 +155,8 @@ public class RouteUtil {
         if (responseAugmentor != null) {
           responseAugmentor.accept(resp);
         }
-        response.handler(resp::write);
         response.endHandler(__ -> resp.end());
+        Pump.pump(response, resp).start();
       }
     );
 
@@ -156,14 +165,32 @@ public class RouteUtil {
       requestAugmentor.accept(forwardingRequest);
     }
     forwardingRequest.setChunked(true);
+    forwardingRequest.exceptionHandler(exc -> {
+      final HttpServerResponse resp = context.response();
+      if (resp.ended() || resp.closed()) {
+        return;
+      }
+      if (resp.headWritten()) {
+        log.warn("Forwarding {} to {}:{} failed while streaming the response", request.uri(), targetHost, targetPort, exc);
+        resp.close();
+      } else if (exc instanceof ConnectionPoolTooBusyException) {
+        error(context, StatusCode.SERVICE_UNAVAILABLE, exc);
+      } else {
+        log.warn("Forwarding {} to {}:{} failed", request.uri(), targetHost, targetPort, exc);
+        error(context, StatusCode.BAD_GATEWAY, exc);
+      }
+    });
 
     if (request.isEnded()) {
       log.warn("Request was already ended - maybe you forgot to pause() it.");
       forwardingRequest.end();
     } else {
-      request.handler(forwardingRequest::write);
       request.endHandler(__ -> forwardingRequest.end());
-      request.resume();
+      // reading the body before there is a connection would buffer all of it
+      forwardingRequest.sendHead(__ -> {
+        Pump.pump(request, forwardingRequest).start();
+        request.resume();
+      });
     }
   }
 
@@ -8,4 +8,42 @@ public interface WebServiceConfig {
   String getWebServiceApiPrefix();
 
   int getWebServicePort();
+
+  /**
+   * The number of {@link WebServiceVerticle} instances deployed by {@link WebServiceVerticle#deploy},
+   * 0 meaning one per event loop.
+   */
+  default int getWebServiceInstances() {
+    return 0;
+  }
+
+  /**
+   * The maximum size of request bodies of routes using {@link BodyMode#buffered()}.
+   */
+  default long getWebServiceMaxBodyBytes() {
+    return 10L * 1024 * 1024;
+  }
+
+  /**
+   * The event loop lag from which on requests are shed by the {@link LoadShedder}, 0 disabling lag based shedding.
+   */
+  default long getWebServiceMaxEventLoopLagMillis() {
+    return 0;
+  }
+
+  /**
+   * The number of requests in flight per verticle instance from which on requests are shed by the
+   * {@link LoadShedder}, 0 disabling in flight based shedding.
+   */
+  default int getWebServiceMaxInFlightRequests() {
+    return 0;
+  }
+
+  default long getWebServiceLagProbeIntervalMillis() {
+    return 100;
+  }
+
+  default long getWebServiceRetryAfterSeconds() {
+    return 1;
+  }
 }
@@ -13,4 +13,25 @@ public interface WebServiceRoute extends Handler<RoutingContext> {
 
   Set<String> handles();
 
+  /**
+   * How the request body is made available to this route, buffered up to the configured maximum size by default.
+   */
+  default BodyMode bodyMode() {
+    return BodyMode.buffered();
+  }
+
+  /**
+   * Whether responses to GET requests are cached, not at all by default.
+   */
+  default ResponseCaching responseCaching() {
+    return ResponseCaching.none();
+  }
+
+  /**
+   * How early requests to this route are shed under load, see {@link LoadShedder}.
+   */
+  default RoutePriority priority() {
+    return RoutePriority.NORMAL;
+  }
+
 }
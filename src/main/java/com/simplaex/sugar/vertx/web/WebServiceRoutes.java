@@ -0,0 +1,133 @@
+package com.simplaex.sugar.vertx.web;
+
+import com.google.inject.Binder;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The routes bound in the injector, discovered once and shared by all instances of {@link WebServiceVerticle}.
+ * As the same route objects handle requests on all event loops they have to be thread safe.
+ * <p>
+ * Routes should be registered explicitly using {@link #register(Binder, Class[])} (or {@link #routes(Binder)}),
+ * in which case only the registered routes are instantiated. Without any registered routes the bindings are
+ * searched for routes instead, looking only at the bound types so that nothing but routes is instantiated;
+ * routes bound under a type which is not a {@link WebServiceRoute} (for example by a provider method returning
+ * {@code Object}) are not discovered this way.
+ */
+@Log4j2
+@Singleton
+public class WebServiceRoutes {
+
+  private static final Key<Set<WebServiceRoute>> ROUTES_KEY = Key.get(new TypeLiteral<Set<WebServiceRoute>>() {
+  });
+
+  @Getter
+  private final List<WebServiceRoute> routes;
+
+  private final Map<WebServiceRoute, ResponseCache> responseCaches = new IdentityHashMap<>();
+
+  @Inject
+  public WebServiceRoutes(@Nonnull final Injector injector) {
+    final List<WebServiceRoute> routes;
+    if (injector.getExistingBinding(ROUTES_KEY) != null) {
+      routes = new ArrayList<>(injector.getInstance(ROUTES_KEY));
+      log.info("Registered {} routes", routes.size());
+    } else {
+      routes = discover(injector);
+      log.info("Discovered {} routes", routes.size());
+    }
+    this.routes = Collections.unmodifiableList(routes);
+    for (final WebServiceRoute route : routes) {
+      final ResponseCaching caching = route.responseCaching();
+      if (caching.isEnabled()) {
+        responseCaches.put(route, new ResponseCache(caching, route));
+      }
+    }
+  }
+
+  /**
+   * The handler to register for the given route: the route itself, or its {@link ResponseCache} if it caches
+   * responses (the cache being shared by all instances of {@link WebServiceVerticle}).
+   */
+  @Nonnull
+  public Handler<RoutingContext> handler(@Nonnull final WebServiceRoute route) {
+    final ResponseCache responseCache = responseCaches.get(route);
+    return responseCache != null ? responseCache : route;
+  }
+
+  /**
+   * The statistics of all response caches by route class.
+   */
+  @Nonnull
+  public JsonObject responseCachesToJson() {
+    final JsonObject json = new JsonObject();
+    responseCaches.forEach((route, cache) -> json.put(route.getClass().getName(), cache.toJson()));
+    return json;
+  }
+
+  /**
+   * Returns the set binder to add routes to, e.g. {@code WebServiceRoutes.routes(binder()).addBinding().to(MyRoute.class)}.
+   */
+  @Nonnull
+  public static Multibinder<WebServiceRoute> routes(@Nonnull final Binder binder) {
+    return Multibinder.newSetBinder(binder, WebServiceRoute.class);
+  }
+
+  @SafeVarargs
+  public static void register(@Nonnull final Binder binder, @Nonnull final Class<? extends WebServiceRoute>... routeClasses) {
+    final Multibinder<WebServiceRoute> routes = routes(binder);
+    for (final Class<? extends WebServiceRoute> routeClass : routeClasses) {
+      routes.addBinding().to(routeClass);
+    }
+  }
+
+  private static List<WebServiceRoute> discover(final Injector injector) {
+    final List<WebServiceRoute> routes = new ArrayList<>();
+    final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (final Map.Entry<Key<?>, Binding<?>> entry : injector.getBindings().entrySet()) {
+      final Binding<?> binding = entry.getValue();
+      if (isRoute(binding)) {
+        final Object route = binding.getProvider().get();
+        if (route instanceof WebServiceRoute && seen.add(route)) {
+          routes.add((WebServiceRoute) route);
+        }
+      }
+    }
+    return routes;
+  }
+
+  private static boolean isRoute(final Binding<?> binding) {
+    if (isRouteType(binding.getKey())) {
+      return true;
+    } else if (binding instanceof LinkedKeyBinding) {
+      return isRouteType(((LinkedKeyBinding<?>) binding).getLinkedKey());
+    } else if (binding instanceof InstanceBinding) {
+      return ((InstanceBinding<?>) binding).getInstance() instanceof WebServiceRoute;
+    }
+    return false;
+  }
+
+  private static boolean isRouteType(final Key<?> key) {
+    return WebServiceRoute.class.isAssignableFrom(key.getTypeLiteral().getRawType());
+  }
+}
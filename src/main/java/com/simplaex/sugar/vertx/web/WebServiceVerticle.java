@@ -1,28 +1,71 @@
 package com.simplaex.sugar.vertx.web;
 
-import com.google.inject.Binding;
 import com.google.inject.Injector;
-import com.google.inject.Key;
 import com.simplaex.bedrock.Strings;
 import com.simplaex.sugar.vertx.VertxInjector;
+import io.netty.util.concurrent.EventExecutor;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.impl.VertxInternal;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
-import java.util.Map;
-
-import static com.simplaex.bedrock.Control.typeOf;
-import static com.simplaex.bedrock.Control.type_;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 @Log4j2
 @RequiredArgsConstructor
 public class WebServiceVerticle extends AbstractVerticle {
 
-  private WebServiceConfig getConfig(final Injector injector) {
+  /**
+   * The load shedder of this instance, available once it has been started.
+   */
+  @Getter
+  private LoadShedder loadShedder;
+
+  /**
+   * Deploys the given verticle class as {@link WebServiceConfig#getWebServiceInstances()} instances which
+   * share the port, each instance being created by the injector associated with vertx (so the class must
+   * not be bound as a singleton).
+   */
+  public static void deploy(
+    @Nonnull final Vertx vertx,
+    @Nonnull final Class<? extends WebServiceVerticle> verticleClass,
+    @Nonnull final Handler<AsyncResult<String>> handler
+  ) {
+    final Injector injector = VertxInjector.injector(vertx);
+    final int instances = getConfig(injector).getWebServiceInstances();
+    final DeploymentOptions deploymentOptions = new DeploymentOptions()
+      .setInstances(instances > 0 ? instances : eventLoops(vertx));
+    vertx.deployVerticle(() -> injector.getInstance(verticleClass), deploymentOptions, handler);
+  }
+
+  /**
+   * The number of event loops of the given vertx instance, which may have been configured to differ from
+   * {@link VertxOptions#DEFAULT_EVENT_LOOP_POOL_SIZE}.
+   */
+  static int eventLoops(@Nonnull final Vertx vertx) {
+    if (!(vertx instanceof VertxInternal)) {
+      return VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE;
+    }
+    int eventLoops = 0;
+    for (final EventExecutor ignored : ((VertxInternal) vertx).getEventLoopGroup()) {
+      eventLoops += 1;
+    }
+    return eventLoops;
+  }
+
+  private static WebServiceConfig getConfig(final Injector injector) {
     try {
       return injector.getProvider(WebServiceConfig.class).get();
     } catch (final Exception exc) {
@@ -42,40 +85,61 @@ public class WebServiceVerticle extends AbstractVerticle {
     }
   }
 
+  @Nullable
+  private static Handler<RoutingContext> bodyHandler(@Nonnull final WebServiceConfig config, @Nonnull final BodyMode bodyMode) {
+    switch (bodyMode.getKind()) {
+      case BUFFERED:
+        return BodyHandler.create()
+          .setBodyLimit(bodyMode.getMaxBytes() > 0 ? bodyMode.getMaxBytes() : config.getWebServiceMaxBodyBytes());
+      case STREAMING:
+        return context -> {
+          context.request().pause();
+          context.next();
+        };
+      default:
+        return null;
+    }
+  }
+
   @Override
   public final void start(final Future<Void> startFuture) {
     final Injector injector = VertxInjector.injector(vertx);
     final WebServiceConfig config = getConfig(injector);
     final Router router = Router.router(vertx);
-    router.route().handler(BodyHandler.create());
-    for (Map.Entry<Key<?>, Binding<?>> entry : injector.getBindings().entrySet()) {
-      final Binding<?> binding = entry.getValue();
-      typeOf(binding.getProvider().get(),
-        type_(WebServiceRoute.class, route -> {
-          route.handles().forEach(p -> {
-            final String path = config.getWebServiceApiPrefix() + p;
-            log.info("Registering route {} on {}", path, route.getClass());
-            router.route(path).handler(route);
-          });
-          route.redirects().forEach((from, to) -> {
-            final String pathFrom = config.getWebServiceApiPrefix() + from;
-            final String pathTo = config.getWebServiceApiPrefix() + to;
-            log.info("Registering redirect from {} to {}", pathFrom, pathTo);
-            final Strings.Template template = Strings.template(":([a-zA-Z](_?[a-zA-Z0-9]+))*", pathTo);
-            router.get(pathFrom).handler(context -> {
-              final String path = template.apply(k -> context.request().getParam(k.substring(1)));
-              final String query = context.request().query();
-              final String pathWithQuery = query == null || query.isEmpty() ? path : path + "?" + query;
-              log.info("Redirecting to {}", pathWithQuery);
-              RouteUtil.redirect(context, pathWithQuery);
-            });
-          });
-        }));
+    final WebServiceRoutes routes = injector.getInstance(WebServiceRoutes.class);
+    loadShedder = new LoadShedder(vertx, config);
+    loadShedder.start();
+    router.route().handler(loadShedder::track);
+    for (final WebServiceRoute route : routes.getRoutes()) {
+      final Handler<RoutingContext> bodyHandler = bodyHandler(config, route.bodyMode());
+      final Handler<RoutingContext> admission = loadShedder.admit(route.priority());
+      route.handles().forEach(p -> {
+        final String path = config.getWebServiceApiPrefix() + p;
+        log.info("Registering route {} on {}", path, route.getClass());
+        router.route(path).handler(admission);
+        if (bodyHandler != null) {
+          router.route(path).handler(bodyHandler);
+        }
+        router.route(path).handler(routes.handler(route));
+      });
+      route.redirects().forEach((from, to) -> {
+        final String pathFrom = config.getWebServiceApiPrefix() + from;
+        final String pathTo = config.getWebServiceApiPrefix() + to;
+        log.info("Registering redirect from {} to {}", pathFrom, pathTo);
+        final Strings.Template template = Strings.template(":([a-zA-Z](_?[a-zA-Z0-9]+))*", pathTo);
+        router.get(pathFrom).handler(context -> {
+          final String path = template.apply(k -> context.request().getParam(k.substring(1)));
+          final String query = context.request().query();
+          final String pathWithQuery = query == null || query.isEmpty() ? path : path + "?" + query;
+          log.info("Redirecting to {}", pathWithQuery);
+          RouteUtil.redirect(context, pathWithQuery);
+        });
+      });
     }
     final HttpServer httpServer = vertx.createHttpServer();
     httpServer.requestHandler(router).listen(config.getWebServicePort(), result -> {
       if (result.succeeded()) {
-        log.info("Listening on port 8080");
+        log.info("Listening on port {}", config.getWebServicePort());
         startFuture.complete();
       } else {
         log.error("Failed to start webserver", result.cause());
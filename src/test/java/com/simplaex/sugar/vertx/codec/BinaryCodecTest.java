@@ -0,0 +1,165 @@
+package com.simplaex.sugar.vertx.codec;
+
+import com.greghaskins.spectrum.Spectrum;
+import io.vertx.core.buffer.Buffer;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.greghaskins.spectrum.Spectrum.describe;
+import static com.greghaskins.spectrum.Spectrum.it;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+
+@RunWith(Spectrum.class)
+public class BinaryCodecTest {
+
+  enum Color {
+    RED, GREEN
+  }
+
+  @Data
+  static class Inner {
+    private String name;
+    private long value;
+  }
+
+  @Data
+  static class Base {
+    private int baseField;
+  }
+
+  @Data
+  @EqualsAndHashCode(callSuper = true)
+  static class Everything extends Base {
+    private int anInt;
+    private long aLong;
+    private double aDouble;
+    private float aFloat;
+    private boolean aBoolean;
+    private byte aByte;
+    private short aShort;
+    private char aChar;
+    private Integer boxedInt;
+    private Long boxedLong;
+    private Double boxedDouble;
+    private Float boxedFloat;
+    private Boolean boxedBoolean;
+    private Byte boxedByte;
+    private Short boxedShort;
+    private Character boxedChar;
+    private String string;
+    private byte[] bytes;
+    private Color color;
+    private List<String> strings;
+    private List<Inner> inners;
+    private Inner inner;
+    private transient String ignored;
+  }
+
+  static class WithMap {
+    private Map<String, String> map;
+  }
+
+  static class Recursive {
+    private Recursive next;
+  }
+
+  static class NoFields {
+  }
+
+  private static Everything everything() {
+    final Everything value = new Everything();
+    value.setBaseField(-7);
+    value.setAnInt(42);
+    value.setALong(Long.MAX_VALUE);
+    value.setADouble(Math.PI);
+    value.setAFloat(1.5f);
+    value.setABoolean(true);
+    value.setAByte((byte) -1);
+    value.setAShort(Short.MIN_VALUE);
+    value.setAChar('ä');
+    value.setBoxedInt(1);
+    value.setBoxedLong(null);
+    value.setBoxedDouble(2.5);
+    value.setBoxedFloat(null);
+    value.setBoxedBoolean(false);
+    value.setBoxedByte((byte) 3);
+    value.setBoxedShort(null);
+    value.setBoxedChar('x');
+    value.setString("grüße 😀");
+    value.setBytes(new byte[]{0, 1, (byte) 0xff});
+    value.setColor(Color.GREEN);
+    value.setStrings(Arrays.asList("a", null, ""));
+    final Inner inner = new Inner();
+    inner.setName("inner");
+    inner.setValue(5);
+    value.setInners(Arrays.asList(inner, null));
+    value.setInner(null);
+    value.setIgnored("not on the wire");
+    return value;
+  }
+
+  {
+    describe("BinaryCodec", () -> {
+
+      final BinaryCodec<Everything> codec = BinaryCodec.forClass(Everything.class);
+
+      it("round trips all supported field types", () -> {
+        final Everything value = everything();
+        final Buffer buffer = Buffer.buffer();
+        codec.encodeToWire(buffer, value);
+        final Everything decoded = codec.decodeFromWire(0, buffer);
+        expect(decoded.getIgnored()).toBeNull();
+        decoded.setIgnored(value.getIgnored());
+        expect(decoded).toEqual(value);
+      });
+
+      it("round trips empty and null fields", () -> {
+        final Everything value = new Everything();
+        final Buffer buffer = Buffer.buffer();
+        codec.encodeToWire(buffer, value);
+        expect(codec.decodeFromWire(0, buffer)).toEqual(value);
+      });
+
+      it("round trips a null value", () -> {
+        final Buffer buffer = Buffer.buffer();
+        codec.encodeToWire(buffer, null);
+        expect(buffer.length()).toEqual(4);
+        expect(codec.decodeFromWire(0, buffer)).toBeNull();
+        expect(codec.encodedLength(0, buffer)).toEqual(4);
+      });
+
+      it("decodes from an offset and reports the encoded length despite trailing bytes", () -> {
+        final Everything value = everything();
+        value.setIgnored(null);
+        final Buffer buffer = Buffer.buffer("prefix");
+        codec.encodeToWire(buffer, value);
+        final int length = buffer.length() - 6;
+        buffer.appendString("trailing garbage");
+        expect(codec.encodedLength(6, buffer)).toEqual(length);
+        expect(codec.decodeFromWire(6, buffer)).toEqual(value);
+      });
+
+      it("rejects unsupported field types", () -> {
+        expect(() -> BinaryCodec.forClass(WithMap.class)).toThrow(IllegalArgumentException.class);
+      });
+
+      it("rejects recursive types", () -> {
+        expect(() -> BinaryCodec.forClass(Recursive.class)).toThrow(IllegalArgumentException.class);
+      });
+
+      it("rejects classes without fields", () -> {
+        expect(() -> BinaryCodec.forClass(NoFields.class)).toThrow(IllegalArgumentException.class);
+      });
+
+      it("rejects JDK classes", () -> {
+        expect(() -> BinaryCodec.forClass(Object.class)).toThrow(IllegalArgumentException.class);
+        expect(() -> BinaryCodec.forClass(String.class)).toThrow(IllegalArgumentException.class);
+      });
+    });
+  }
+}
@@ -0,0 +1,101 @@
+package com.simplaex.sugar.vertx.sql;
+
+import com.greghaskins.spectrum.Spectrum;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.greghaskins.spectrum.Spectrum.describe;
+import static com.greghaskins.spectrum.Spectrum.it;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+
+@RunWith(Spectrum.class)
+public class BulkCopyTest {
+
+  private static String csv(final Object... values) {
+    final Buffer buffer = Buffer.buffer();
+    BulkCopy.appendCsv(buffer, new JsonArray(Arrays.asList(values)));
+    return buffer.toString(StandardCharsets.UTF_8);
+  }
+
+  {
+    describe("BulkCopy.appendCsv", () -> {
+
+      it("writes numbers and booleans as they are", () -> {
+        expect(csv(1, -2L, 1.5, true, false)).toEqual("1,-2,1.5,true,false\n");
+      });
+
+      it("writes null as an empty unquoted field", () -> {
+        expect(csv(null, 1, null)).toEqual(",1,\n");
+        expect(csv((Object) null)).toEqual("\n");
+      });
+
+      it("quotes empty strings so they are not taken for null", () -> {
+        expect(csv("", null)).toEqual("\"\",\n");
+      });
+
+      it("doubles quotes inside strings", () -> {
+        expect(csv("say \"hi\"")).toEqual("\"say \"\"hi\"\"\"\n");
+      });
+
+      it("keeps separators, newlines and backslashes inside quoted strings", () -> {
+        expect(csv("a,b", "line\nbreak\r\n", "back\\slash")).toEqual("\"a,b\",\"line\nbreak\r\n\",\"back\\slash\"\n");
+      });
+
+      it("writes non ascii strings as utf-8", () -> {
+        final Buffer buffer = Buffer.buffer();
+        BulkCopy.appendCsv(buffer, new JsonArray().add("grüße"));
+        expect(buffer.length()).toEqual(10);
+        expect(buffer.toString(StandardCharsets.UTF_8)).toEqual("\"grüße\"\n");
+      });
+
+      it("encodes json objects and arrays and quotes them", () -> {
+        expect(csv(new JsonObject().put("a", "\"x\"").put("b", 1), new JsonArray().add(1).add("two")))
+          .toEqual("\"{\"\"a\"\":\"\"\\\"\"x\\\"\"\"\",\"\"b\"\":1}\",\"[1,\"\"two\"\"]\"\n");
+      });
+
+      it("writes byte arrays and buffers in the hex format of bytea", () -> {
+        expect(csv(new byte[]{0, 15, 16, (byte) 0xff}, Buffer.buffer(new byte[]{(byte) 0xab})))
+          .toEqual("\\x000f10ff,\\xab\n");
+        expect(csv((Object) new byte[0])).toEqual("\\x\n");
+      });
+
+      it("appends lines to what is in the buffer", () -> {
+        final Buffer buffer = Buffer.buffer();
+        BulkCopy.appendCsv(buffer, new JsonArray().add(1));
+        BulkCopy.appendCsv(buffer, new JsonArray().add(2));
+        expect(buffer.toString(StandardCharsets.UTF_8)).toEqual("1\n2\n");
+      });
+    });
+
+    describe("BulkCopy.statement", () -> {
+
+      it("quotes table and column names", () -> {
+        expect(BulkCopy.statement("events", Arrays.asList("id", "order", "Payload")))
+          .toEqual("COPY \"events\" (\"id\", \"order\", \"Payload\") FROM STDIN WITH (FORMAT csv)");
+      });
+
+      it("quotes schema and table separately", () -> {
+        expect(BulkCopy.statement("analytics.events", Collections.singletonList("id")))
+          .toEqual("COPY \"analytics\".\"events\" (\"id\") FROM STDIN WITH (FORMAT csv)");
+      });
+
+      it("doubles quotes inside names", () -> {
+        expect(BulkCopy.statement("t", Collections.singletonList("a\") FROM STDIN; DROP TABLE t; --")))
+          .toEqual("COPY \"t\" (\"a\"\") FROM STDIN; DROP TABLE t; --\") FROM STDIN WITH (FORMAT csv)");
+      });
+
+      it("rejects empty names", () -> {
+        expect(() -> BulkCopy.statement("analytics.", Collections.singletonList("id")))
+          .toThrow(IllegalArgumentException.class);
+        expect(() -> BulkCopy.statement("t", Collections.singletonList("")))
+          .toThrow(IllegalArgumentException.class);
+      });
+    });
+  }
+}
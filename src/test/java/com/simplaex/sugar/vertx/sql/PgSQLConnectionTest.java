@@ -0,0 +1,84 @@
+package com.simplaex.sugar.vertx.sql;
+
+import com.greghaskins.spectrum.Spectrum;
+import org.junit.runner.RunWith;
+
+import static com.greghaskins.spectrum.Spectrum.describe;
+import static com.greghaskins.spectrum.Spectrum.it;
+import static com.mscharhag.oleaster.matcher.Matchers.expect;
+
+@RunWith(Spectrum.class)
+public class PgSQLConnectionTest {
+
+  {
+    describe("PgSQLConnection.rewrite", () -> {
+
+      it("numbers the placeholders", () -> {
+        expect(PgSQLConnection.rewrite("SELECT * FROM t WHERE a = ? AND b IN (?, ?)"))
+          .toEqual("SELECT * FROM t WHERE a = $1 AND b IN ($2, $3)");
+      });
+
+      it("leaves statements without placeholders alone", () -> {
+        expect(PgSQLConnection.rewrite("SELECT 1")).toEqual("SELECT 1");
+        expect(PgSQLConnection.rewrite("")).toEqual("");
+      });
+
+      it("skips string literals", () -> {
+        expect(PgSQLConnection.rewrite("SELECT '?', ? FROM t WHERE a = 'what?'"))
+          .toEqual("SELECT '?', $1 FROM t WHERE a = 'what?'");
+      });
+
+      it("skips doubled quotes inside string literals", () -> {
+        expect(PgSQLConnection.rewrite("SELECT 'it''s ?', ?")).toEqual("SELECT 'it''s ?', $1");
+        expect(PgSQLConnection.rewrite("SELECT '', ?")).toEqual("SELECT '', $1");
+      });
+
+      it("skips backslash escapes inside escape strings only", () -> {
+        expect(PgSQLConnection.rewrite("SELECT E'\\' ?', ?")).toEqual("SELECT E'\\' ?', $1");
+        expect(PgSQLConnection.rewrite("SELECT e'\\\\', ?")).toEqual("SELECT e'\\\\', $1");
+        expect(PgSQLConnection.rewrite("SELECT '\\', ?")).toEqual("SELECT '\\', $1");
+        expect(PgSQLConnection.rewrite("SELECT name'\\', ?")).toEqual("SELECT name'\\', $1");
+      });
+
+      it("skips quoted identifiers", () -> {
+        expect(PgSQLConnection.rewrite("SELECT \"what?\", \"a\"\"?\" FROM t WHERE b = ?"))
+          .toEqual("SELECT \"what?\", \"a\"\"?\" FROM t WHERE b = $1");
+      });
+
+      it("skips line comments", () -> {
+        expect(PgSQLConnection.rewrite("SELECT ? -- really?\nFROM t WHERE a = ?"))
+          .toEqual("SELECT $1 -- really?\nFROM t WHERE a = $2");
+        expect(PgSQLConnection.rewrite("SELECT ? -- really?")).toEqual("SELECT $1 -- really?");
+      });
+
+      it("skips block comments, also nested ones", () -> {
+        expect(PgSQLConnection.rewrite("SELECT /* a? */ ?")).toEqual("SELECT /* a? */ $1");
+        expect(PgSQLConnection.rewrite("SELECT /* a /* b? */ c? */ ?")).toEqual("SELECT /* a /* b? */ c? */ $1");
+      });
+
+      it("skips dollar quoted strings", () -> {
+        expect(PgSQLConnection.rewrite("SELECT $$what?$$, ?")).toEqual("SELECT $$what?$$, $1");
+        expect(PgSQLConnection.rewrite("SELECT $fn$ a ? 'b $$ ? $fn$, ?"))
+          .toEqual("SELECT $fn$ a ? 'b $$ ? $fn$, $1");
+        expect(PgSQLConnection.rewrite("DO $body$ BEGIN PERFORM '?'; END $body$; SELECT ?"))
+          .toEqual("DO $body$ BEGIN PERFORM '?'; END $body$; SELECT $1");
+      });
+
+      it("does not take positional parameters or identifiers with dollars for dollar quotes", () -> {
+        expect(PgSQLConnection.rewrite("SELECT $1, $2 FROM t")).toEqual("SELECT $1, $2 FROM t");
+        expect(PgSQLConnection.rewrite("SELECT ?, t$x.a$b$ FROM t$x WHERE a$ = ?"))
+          .toEqual("SELECT $1, t$x.a$b$ FROM t$x WHERE a$ = $2");
+      });
+
+      it("keeps casts", () -> {
+        expect(PgSQLConnection.rewrite("SELECT ?::jsonb, ?::text[]")).toEqual("SELECT $1::jsonb, $2::text[]");
+      });
+
+      it("copes with unterminated literals and comments", () -> {
+        expect(PgSQLConnection.rewrite("SELECT ?, 'open ?")).toEqual("SELECT $1, 'open ?");
+        expect(PgSQLConnection.rewrite("SELECT ?, /* open ?")).toEqual("SELECT $1, /* open ?");
+        expect(PgSQLConnection.rewrite("SELECT ?, $$ open ?")).toEqual("SELECT $1, $$ open ?");
+      });
+    });
+  }
+}